@@ -0,0 +1,154 @@
+package sjdb;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This class represents an Aggregate operator, which groups its input on
+ * some attributes and computes aggregate functions over each group. Its
+ * output holds the grouping attributes, followed by one attribute for each
+ * aggregation.
+ * 
+ * A partial aggregate is pushed down below a join, and groups on the join
+ * attributes as well, so its results must still be combined by an
+ * Aggregate above.
+ * 
+ * @author Emily Shepherd
+ */
+public class Aggregate extends UnaryOperator {
+	/**
+	 * The physical algorithms an aggregate may be executed with
+	 */
+	public enum Algorithm {
+		HASH("HASH"),
+		STREAM("STREAM");
+		
+		private String label;
+		
+		private Algorithm(String label) {
+			this.label = label;
+		}
+		
+		public String toString() {
+			return this.label;
+		}
+	}
+	
+	private List<Attribute> groupBy;
+	private List<Aggregation> aggregations;
+	/**
+	 * True if this is a partial aggregate below a join
+	 */
+	private boolean partial;
+	/**
+	 * The physical algorithm, or null if this aggregate is still logical
+	 */
+	private Algorithm algorithm;
+	
+	/**
+	 * Create a new aggregate operator.
+	 * @param input Child operator
+	 * @param groupBy Attributes to group on
+	 * @param aggregations Aggregations to compute for each group
+	 */
+	public Aggregate(Operator input, List<Attribute> groupBy, List<Aggregation> aggregations) {
+		this(input, groupBy, aggregations, false);
+	}
+	
+	/**
+	 * Create a new, possibly partial, aggregate operator.
+	 * @param input Child operator
+	 * @param groupBy Attributes to group on
+	 * @param aggregations Aggregations to compute for each group
+	 * @param partial True if the results are still to be combined above
+	 */
+	public Aggregate(Operator input, List<Attribute> groupBy, List<Aggregation> aggregations, boolean partial) {
+		super(input);
+		this.groupBy = groupBy;
+		this.aggregations = aggregations;
+		this.partial = partial;
+	}
+	
+	/**
+	 * Return the list of attributes grouped on by this operator
+	 * @return List of attributes
+	 */
+	public List<Attribute> getGroupBy() {
+		return this.groupBy;
+	}
+	
+	/**
+	 * Return the list of aggregations computed by this operator
+	 * @return List of aggregations
+	 */
+	public List<Aggregation> getAggregations() {
+		return this.aggregations;
+	}
+	
+	/**
+	 * Return true if this is a partial aggregate
+	 * @return
+	 */
+	public boolean isPartial() {
+		return this.partial;
+	}
+	
+	/**
+	 * Return the physical algorithm chosen for this aggregate
+	 * @return Algorithm, or null if none has been chosen
+	 */
+	public Algorithm getAlgorithm() {
+		return this.algorithm;
+	}
+	
+	/**
+	 * Set the physical algorithm used to execute this aggregate
+	 * @param algorithm Algorithm
+	 */
+	public void setAlgorithm(Algorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+	
+	/* (non-Javadoc)
+	 * @see sjdb.UnaryOperator#accept(sjdb.OperatorVisitor)
+	 */
+	public void accept(PlanVisitor visitor) {
+		super.accept(visitor);
+		visitor.visit(this);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		String ret = "";
+		
+		if (this.algorithm != null) {
+			ret += this.algorithm + " ";
+		}
+		if (this.partial) {
+			ret += "PARTIAL ";
+		}
+		ret += "AGGREGATE [";
+		
+		Iterator<Attribute> iter = this.groupBy.iterator();
+		while (iter.hasNext()) {
+			ret += iter.next().getName();
+			if (iter.hasNext()) {
+				ret += ",";
+			}
+		}
+		ret += "] [";
+		
+		Iterator<Aggregation> aggs = this.aggregations.iterator();
+		while (aggs.hasNext()) {
+			ret += aggs.next().toString();
+			if (aggs.hasNext()) {
+				ret += ",";
+			}
+		}
+		ret += "] (" + getInput().toString() + ")";
+		
+		return ret;
+	}
+}
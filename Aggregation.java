@@ -0,0 +1,95 @@
+package sjdb;
+
+/**
+ * This class represents a single aggregate function computed by an
+ * Aggregate operator, such as SUM(a) or COUNT(*).
+ * 
+ * Each aggregation produces an attribute of the Aggregate's output, named
+ * after the function it computes unless given another name. Partial
+ * aggregations keep the name of the aggregation they are part of, so that
+ * the aggregation combining them produces the same attribute.
+ * 
+ * @author Emily Shepherd
+ */
+public class Aggregation {
+	/**
+	 * The aggregate functions that may be computed
+	 */
+	public enum Function {
+		COUNT, SUM, MIN, MAX
+	}
+	
+	private Function function;
+	/**
+	 * The attribute aggregated, or null for COUNT(*)
+	 */
+	private Attribute attribute;
+	/**
+	 * The name of the attribute produced
+	 */
+	private String name;
+	
+	/**
+	 * Create an aggregation named after the function it computes
+	 * @param function Aggregate function
+	 * @param attribute Attribute aggregated, or null for COUNT(*)
+	 */
+	public Aggregation(Function function, Attribute attribute) {
+		this(function, attribute, function + "(" + (attribute == null ? "*" : attribute.getName()) + ")");
+	}
+	
+	/**
+	 * Create an aggregation with the given output name
+	 * @param function Aggregate function
+	 * @param attribute Attribute aggregated, or null for COUNT(*)
+	 * @param name Name of the attribute produced
+	 */
+	public Aggregation(Function function, Attribute attribute, String name) {
+		this.function = function;
+		this.attribute = attribute;
+		this.name = name;
+	}
+	
+	public Function getFunction() {
+		return this.function;
+	}
+	
+	/**
+	 * Return the attribute aggregated
+	 * @return Attribute, or null for COUNT(*)
+	 */
+	public Attribute getAttribute() {
+		return this.attribute;
+	}
+	
+	/**
+	 * Return the name of the attribute produced
+	 * @return Name
+	 */
+	public String getName() {
+		return this.name;
+	}
+	
+	/**
+	 * Return the aggregation which combines the partial results of this
+	 * one, computed over groups of its input, into the final result.
+	 * Counts are combined by summing them; the other functions by
+	 * applying themselves again.
+	 * @return Combining aggregation
+	 */
+	public Aggregation combine() {
+		Function combined = this.function == Function.COUNT ? Function.SUM : this.function;
+		return new Aggregation(combined, new Attribute(this.name), this.name);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		String ret = this.function + "(" + (this.attribute == null ? "*" : this.attribute.getName()) + ")";
+		if (!ret.equals(this.name)) {
+			ret += " AS " + this.name;
+		}
+		return ret;
+	}
+}
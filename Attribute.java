@@ -9,12 +9,29 @@ package sjdb;
  */
 public class Attribute {
 
+	/**
+	 * The width, in bytes, assumed for attributes whose width has not
+	 * been declared in the catalogue
+	 */
+	public static final int DEFAULT_WIDTH = 8;
+
 	private String name;
 	private int values;
+	private int width;
+	/**
+	 * Whether the width was declared in the catalogue, rather than assumed
+	 */
+	private boolean declared;
+	/**
+	 * The dictionary this attribute is encoded with, or null if it is
+	 * stored as is
+	 */
+	private Dictionary dictionary;
 
 	public Attribute(String name) {
 		this.name = name;
 		this.values = 0;
+		this.width = DEFAULT_WIDTH;
 	}
 	/**
 	 * @param name
@@ -23,11 +40,41 @@ public class Attribute {
 	public Attribute(String name, int values) {
 		this.name = name;
 		this.values = values;
+		this.width = DEFAULT_WIDTH;
+	}
+	
+	/**
+	 * @param name
+	 * @param values
+	 * @param width the width of a single value, in bytes
+	 */
+	public Attribute(String name, int values, int width) {
+		this.name = name;
+		this.values = values;
+		this.width = width;
+		this.declared = true;
 	}
 	
 	public Attribute(Attribute attr) {
 		this.name = attr.name;
 		this.values = attr.values;
+		this.width = attr.width;
+		this.declared = attr.declared;
+		this.dictionary = attr.dictionary;
+	}
+	
+	/**
+	 * Copy an attribute, replacing its number of distinct values
+	 * 
+	 * @param attr
+	 * @param values
+	 */
+	public Attribute(Attribute attr, int values) {
+		this.name = attr.name;
+		this.values = values;
+		this.width = attr.width;
+		this.declared = attr.declared;
+		this.dictionary = attr.dictionary;
 	}
 	
 	/**
@@ -44,6 +91,40 @@ public class Attribute {
 		return values;
 	}
 	
+	/**
+	 * @return the width of a single stored value of this attribute, in
+	 * bytes: the width of its code, if it is dictionary-encoded
+	 */
+	public int getWidth() {
+		if (dictionary != null) {
+			return dictionary.getCodeWidth();
+		}
+		return width;
+	}
+	
+	/**
+	 * @return whether every value of this attribute is stored in the same
+	 * number of bytes: true if it is dictionary-encoded or its width was
+	 * declared in the catalogue, false if its width is only assumed
+	 */
+	public boolean isFixedWidth() {
+		return dictionary != null || declared;
+	}
+	
+	/**
+	 * @return the dictionary this attribute is encoded with, or null
+	 */
+	public Dictionary getDictionary() {
+		return dictionary;
+	}
+	
+	/**
+	 * @param dictionary the dictionary this attribute is encoded with
+	 */
+	public void setDictionary(Dictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+	
 	
 	@Override
 	public int hashCode() {
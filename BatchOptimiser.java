@@ -0,0 +1,346 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Optimises a batch of queries together, sharing their common sub-plans
+ * 
+ * Each query is first optimised on its own. Every sub-plan of the results
+ * is then given a signature, describing the relations, predicates and
+ * projections it is built from, and any which appear more than once are
+ * merged, so the plans form a DAG in which each is only computed once.
+ * 
+ * Sharing a sub-plan means materialising its result, and reading it back
+ * for each consumer, so this is only done when it is cheaper than
+ * computing the sub-plan again each time. The largest sub-plans are
+ * considered first, as sharing them shares everything beneath them too.
+ * 
+ * Usage:
+ *   BatchOptimiser batch = new BatchOptimiser(catalogue);
+ *   BatchResult result   = batch.optimise(queries);
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class BatchOptimiser
+{
+	/**
+	 * The Catalogue, passed to each Optimiser
+	 */
+	private Catalogue cat;
+	
+	/**
+	 * The CostModel used to optimise each query, and to cost materialising
+	 * shared results
+	 */
+	private CostModel costModel;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cat The Catalogue
+	 */
+	public BatchOptimiser(Catalogue cat)
+	{
+		this(cat, new DefaultCostModel());
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param cat The Catalogue
+	 * @param costModel The CostModel used to compare plans
+	 */
+	public BatchOptimiser(Catalogue cat, CostModel costModel)
+	{
+		this.cat       = cat;
+		this.costModel = costModel;
+	}
+	
+	/**
+	 * Optimises a batch of queries
+	 * 
+	 * @param queries The canonical plans of the queries
+	 * @return The optimised plans, sharing common sub-plans
+	 */
+	public BatchResult optimise(List<Operator> queries)
+	{
+		ArrayList<Operator> plans                          = new ArrayList<Operator>();
+		HashMap<String, ArrayList<Occurrence>> occurrences = new HashMap<String, ArrayList<Occurrence>>();
+		double independentCost                             = 0;
+		
+		for (Operator query : queries)
+		{
+			Operator plan = new Optimiser(cat, costModel).optimise(query);
+			
+			independentCost += plan.getCost();
+			plans.add(plan);
+		}
+		
+		for (int i = 0; i < plans.size(); i++)
+		{
+			collect(null, i, plans.get(i), occurrences, true);
+		}
+		
+		ArrayList<ArrayList<Occurrence>> common = new ArrayList<ArrayList<Occurrence>>();
+		
+		for (ArrayList<Occurrence> list : occurrences.values())
+		{
+			if (list.size() > 1) common.add(list);
+		}
+		
+		// Most expensive first, so that the largest common sub-plans are
+		// shared whole
+		Collections.sort(common, new Comparator<ArrayList<Occurrence>>()
+		{
+			@Override
+			public int compare(ArrayList<Occurrence> a, ArrayList<Occurrence> b)
+			{
+				return Double.compare(b.get(0).op.getCost(), a.get(0).op.getCost());
+			}
+		});
+		
+		Set<Operator> removed      = Collections.newSetFromMap(new IdentityHashMap<Operator, Boolean>());
+		ArrayList<Operator> shared = new ArrayList<Operator>();
+		double cost                = independentCost;
+		
+		for (ArrayList<Occurrence> list : common)
+		{
+			ArrayList<Occurrence> live = new ArrayList<Occurrence>();
+			
+			for (Occurrence o : list)
+			{
+				if (!removed.contains(o.op)) live.add(o);
+			}
+			
+			if (live.size() < 2) continue;
+			
+			Operator keep = live.get(0).op;
+			int k         = live.size();
+			
+			// Computing it once saves k - 1 computations, but it must be
+			// written out once and read back by all k consumers
+			double saving = (k - 1) * keep.getCost() - (k + 1) * costModel.spool(keep.getOutput());
+			
+			if (saving <= 0) continue;
+			
+			for (Occurrence o : live.subList(1, k))
+			{
+				remove(o.op, removed);
+				
+				if (o.parent == null)
+				{
+					plans.set(o.index, keep);
+				}
+				else
+				{
+					o.parent.setInput(o.index, keep);
+				}
+			}
+			
+			shared.add(keep);
+			cost -= saving;
+		}
+		
+		return new BatchResult(plans, shared, independentCost, cost);
+	}
+	
+	/**
+	 * Records every shareable sub-plan of a plan under its signature
+	 * 
+	 * Lone Scans aren't worth sharing. Neither is anything on the inner side
+	 * of an index nested loop join, as that is only ever probed, never
+	 * computed in full.
+	 * 
+	 * @param parent The Operator this is an input of, or null for a root
+	 * @param index Its position in the parent's inputs, or in the plans
+	 * @param op The sub-plan
+	 * @param occurrences The occurrences of each signature found so far
+	 * @param shareable False if this sub-plan can't be shared
+	 * @return The signature of the sub-plan
+	 */
+	private String collect(Operator parent, int index, Operator op,
+			HashMap<String, ArrayList<Occurrence>> occurrences, boolean shareable)
+	{
+		if (op instanceof Scan || op instanceof IndexScan || op instanceof BitmapScan)
+		{
+			return op.toString();
+		}
+		
+		List<Operator> inputs  = op.getInputs();
+		ArrayList<String> sigs = new ArrayList<String>();
+		
+		for (int i = 0; i < inputs.size(); i++)
+		{
+			boolean probed = op instanceof Join
+					&& ((Join)op).getAlgorithm() == Join.Algorithm.INDEX_NESTED_LOOP
+					&& i == 1;
+			
+			sigs.add(collect(op, i, inputs.get(i), occurrences, shareable && !probed));
+		}
+		
+		String sig = signature(op, sigs);
+		
+		if (shareable)
+		{
+			if (!occurrences.containsKey(sig))
+			{
+				occurrences.put(sig, new ArrayList<Occurrence>());
+			}
+			
+			occurrences.get(sig).add(new Occurrence(parent, index, op));
+		}
+		
+		return sig;
+	}
+	
+	/**
+	 * Builds the signature of an Operator, from those of its inputs
+	 * 
+	 * Two sub-plans with the same signature produce the same result, in the
+	 * same order. Projected attributes are sorted, as their order doesn't
+	 * matter, as are the inputs of a Product. The inputs of a Join are left
+	 * alone, as its algorithm may rely on their order.
+	 * 
+	 * @param op The Operator
+	 * @param inputs The signatures of its inputs
+	 * @return Its signature
+	 */
+	private String signature(Operator op, ArrayList<String> inputs)
+	{
+		if (op instanceof Project)
+		{
+			ArrayList<String> names = new ArrayList<String>();
+			
+			for (Attribute attr : ((Project)op).getAttributes())
+			{
+				names.add(attr.getName());
+			}
+			
+			Collections.sort(names);
+			
+			return "PROJECT " + names + " (" + inputs.get(0) + ")";
+		}
+		else if (op instanceof Select)
+		{
+			return "SELECT [" + ((Select)op).getPredicate() + "] (" + inputs.get(0) + ")";
+		}
+		else if (op instanceof Aggregate)
+		{
+			Aggregate agg = (Aggregate)op;
+			
+			return (agg.isPartial() ? "PARTIAL " : "") + "AGGREGATE " + agg.getGroupBy() + " "
+					+ agg.getAggregations() + " (" + inputs.get(0) + ")";
+		}
+		else if (op instanceof Sort)
+		{
+			return "SORT [" + ((Sort)op).getAttribute() + "] (" + inputs.get(0) + ")";
+		}
+		else if (op instanceof Fetch)
+		{
+			Fetch fetch = (Fetch)op;
+			
+			return "FETCH " + fetch.getAttributes() + " FROM " + fetch.getRelation() + " (" + inputs.get(0) + ")";
+		}
+		else if (op instanceof RuntimeFilter)
+		{
+			RuntimeFilter filter = (RuntimeFilter)op;
+			
+			// Filters built from different sources let different tuples by
+			return "BLOOM FILTER [" + filter.getPredicate() + "] (" + inputs.get(0) + ") FROM ("
+					+ filter.getSource() + ")";
+		}
+		else if (op instanceof SemiJoin)
+		{
+			return "(" + inputs.get(0) + ") SEMI JOIN [" + ((SemiJoin)op).getPredicate() + "] ("
+					+ inputs.get(1) + ")";
+		}
+		else if (op instanceof MultiwayJoin)
+		{
+			String sig = "MULTIWAY JOIN " + ((MultiwayJoin)op).getPredicates();
+			
+			for (String input : inputs)
+			{
+				sig += " (" + input + ")";
+			}
+			
+			return sig;
+		}
+		else if (op instanceof Join)
+		{
+			Join join = (Join)op;
+			
+			return "(" + inputs.get(0) + ") " + join.getAlgorithm() + " [" + join.getPredicate()
+					+ "] (" + inputs.get(1) + ")";
+		}
+		else
+		{
+			Collections.sort(inputs);
+			
+			return "(" + inputs.get(0) + ") TIMES (" + inputs.get(1) + ")";
+		}
+	}
+	
+	/**
+	 * Marks every Operator in a sub-plan as removed from the batch
+	 * 
+	 * @param op The root of the sub-plan
+	 * @param removed The Operators removed so far
+	 */
+	private void remove(Operator op, Set<Operator> removed)
+	{
+		removed.add(op);
+		
+		// Scans have no inputs
+		if (op instanceof Scan || op instanceof IndexScan || op instanceof BitmapScan) return;
+		
+		for (Operator input : op.getInputs())
+		{
+			remove(input, removed);
+		}
+	}
+	
+	/**
+	 * A place in the batch where a sub-plan is used
+	 * 
+	 * @author Emily Shepherd
+	 *
+	 */
+	private class Occurrence
+	{
+		/**
+		 * The Operator it is an input of, or null if it is a whole plan
+		 */
+		private Operator parent;
+		
+		/**
+		 * Its position in the parent's inputs, or in the list of plans
+		 */
+		private int index;
+		
+		/**
+		 * The sub-plan
+		 */
+		private Operator op;
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param parent The Operator it is an input of, or null
+		 * @param index Its position
+		 * @param op The sub-plan
+		 */
+		public Occurrence(Operator parent, int index, Operator op)
+		{
+			this.parent = parent;
+			this.index  = index;
+			this.op     = op;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package sjdb;
+
+import java.util.List;
+
+/**
+ * The outcome of optimising a batch of queries together
+ * 
+ * @see BatchOptimiser
+ * @author Emily Shepherd
+ *
+ */
+public class BatchResult
+{
+	/**
+	 * The optimised plans, in the order the queries were given
+	 */
+	private List<Operator> plans;
+	
+	/**
+	 * The sub-plans computed once and shared between several consumers
+	 */
+	private List<Operator> shared;
+	
+	/**
+	 * The total cost of running each plan on its own
+	 */
+	private double independentCost;
+	
+	/**
+	 * The total cost of running the plans with their sub-plans shared
+	 */
+	private double cost;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param plans The optimised plans
+	 * @param shared The shared sub-plans
+	 * @param independentCost The total cost of running each plan on its own
+	 * @param cost The total cost with sub-plans shared
+	 */
+	public BatchResult(List<Operator> plans, List<Operator> shared, double independentCost, double cost)
+	{
+		this.plans           = plans;
+		this.shared          = shared;
+		this.independentCost = independentCost;
+		this.cost            = cost;
+	}
+	
+	/**
+	 * Returns the optimised plans
+	 * 
+	 * Together these form a DAG: each shared sub-plan is the very same
+	 * Operator wherever it is used, so is only to be computed once.
+	 * 
+	 * @return The plans, in the order the queries were given
+	 */
+	public List<Operator> getPlans()
+	{
+		return plans;
+	}
+	
+	/**
+	 * @return The sub-plans which are shared, most expensive first
+	 */
+	public List<Operator> getShared()
+	{
+		return shared;
+	}
+	
+	/**
+	 * @return The total cost of running each plan on its own
+	 */
+	public double getIndependentCost()
+	{
+		return independentCost;
+	}
+	
+	/**
+	 * Returns the total cost of running the batch
+	 * 
+	 * Each shared sub-plan is counted once, plus the cost of materialising
+	 * its result and reading it back for each consumer.
+	 * 
+	 * @return The total cost
+	 */
+	public double getCost()
+	{
+		return cost;
+	}
+}
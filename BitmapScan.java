@@ -0,0 +1,114 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This class implements a BitmapScan operator, which feeds the tuples of a
+ * NamedRelation matching one or more attr=value predicates into a query
+ * plan. The bitmap of each value is read from its attribute's bitmap
+ * index, and the bitmaps are ANDed together, so that the only tuples read
+ * are those matching every predicate, in the order they are stored.
+ * 
+ * @author Emily Shepherd
+ */
+public class BitmapScan extends Operator
+{
+	/**
+	 * The named relation to be read
+	 */
+	private NamedRelation relation;
+	
+	/**
+	 * The bitmap index of each predicate's attribute
+	 */
+	private List<Index> indexes;
+	
+	/**
+	 * The attr=value predicates whose bitmaps are ANDed
+	 */
+	private List<Predicate> predicates;
+	
+	/**
+	 * Create a new bitmap scan of a given named relation
+	 * 
+	 * @param relation Named relation to be read
+	 * @param indexes Bitmap index on each predicate's attribute
+	 * @param predicates The attr=value predicates to look up
+	 */
+	public BitmapScan(NamedRelation relation, List<Index> indexes, List<Predicate> predicates)
+	{
+		this.relation   = relation;
+		this.indexes    = new ArrayList<Index>(indexes);
+		this.predicates = new ArrayList<Predicate>(predicates);
+		this.output     = new Relation(relation.getTupleCount());
+		Iterator<Attribute> iter = relation.getAttributes().iterator();
+		
+		while (iter.hasNext())
+		{
+			this.output.addAttribute(new Attribute(iter.next()));
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see sjdb.Operator#getInputs()
+	 */
+	@Override
+	public List<Operator> getInputs()
+	{
+		return null;
+	}
+	
+	/**
+	 * @return Named relation to be read
+	 */
+	public Relation getRelation()
+	{
+		return relation;
+	}
+	
+	/**
+	 * @return The bitmap index of each predicate's attribute
+	 */
+	public List<Index> getIndexes()
+	{
+		return indexes;
+	}
+	
+	/**
+	 * @return The attr=value predicates looked up
+	 */
+	public List<Predicate> getPredicates()
+	{
+		return predicates;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		String ret               = "BITMAP SCAN [";
+		Iterator<Predicate> iter = predicates.iterator();
+		
+		while (iter.hasNext())
+		{
+			ret += iter.next().toString();
+			
+			if (iter.hasNext()) ret += ",";
+		}
+		
+		return ret + "] (" + relation.toString() + ")";
+	}
+	
+	/* (non-Javadoc)
+	 * @see sjdb.Operator#accept(sjdb.OperatorVisitor)
+	 */
+	@Override
+	public void accept(PlanVisitor visitor)
+	{
+		visitor.visit(this);
+	}
+}
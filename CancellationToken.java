@@ -0,0 +1,92 @@
+package sjdb;
+
+/**
+ * Tells a long running optimisation when to stop
+ * 
+ * A token is cancelled either explicitly, by calling cancel() (from any
+ * thread), or implicitly, once its deadline passes. A token may also have
+ * a parent, in which case it is cancelled whenever its parent is.
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class CancellationToken
+{
+	/**
+	 * Set when cancel() is called
+	 */
+	private volatile boolean cancelled = false;
+	
+	/**
+	 * The System.nanoTime() after which this is cancelled
+	 */
+	private long deadline;
+	
+	/**
+	 * When false, this has no deadline
+	 */
+	private boolean hasDeadline;
+	
+	/**
+	 * A token which also cancels this one, or null
+	 */
+	private CancellationToken parent;
+	
+	/**
+	 * Constructor
+	 * 
+	 * Creates a token which is only cancelled by calling cancel()
+	 */
+	public CancellationToken()
+	{
+		this(null, -1);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param millis The time, in milliseconds, after which this is cancelled
+	 */
+	public CancellationToken(long millis)
+	{
+		this(null, millis);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param parent A token which also cancels this one, or null
+	 * @param millis The time, in milliseconds, after which this is cancelled,
+	 *    or a negative number for no deadline
+	 */
+	public CancellationToken(CancellationToken parent, long millis)
+	{
+		this.parent      = parent;
+		this.hasDeadline = millis >= 0;
+		this.deadline    = System.nanoTime() + millis * 1000 * 1000;
+	}
+	
+	/**
+	 * Cancels this token, and any tokens which have it as a parent
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+	
+	/**
+	 * Checks if work should stop
+	 * 
+	 * @return True if this, or its parent, has been cancelled or has passed
+	 *    its deadline
+	 */
+	public boolean isCancelled()
+	{
+		if (cancelled) return true;
+		
+		// Compared by subtraction, as nanoTime() may wrap round
+		if (hasDeadline && System.nanoTime() - deadline >= 0) return true;
+		
+		return parent != null && parent.isCancelled();
+	}
+}
@@ -1,6 +1,8 @@
 package sjdb;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * This class contains the system catalogue for the database; it
@@ -8,9 +10,13 @@ import java.util.HashMap;
  * 
  * - creating new NamedRelations
  * - creating new Attributes
+ * - creating new materialised Views
  * 
  * The catalogue maintains a directory of NamedRelations and
- * Attributes, indexed by name.
+ * Attributes, indexed by name. Views are NamedRelations too, but
+ * their attributes share their names with the attributes of the
+ * relations they were built from, so are not entered into the
+ * directory of Attributes.
  * 
  * Note that any statistical information about named relations or
  * the attributes therein is stored on the relations or attributes,
@@ -23,11 +29,15 @@ public class Catalogue {
 	
 	private HashMap<String, NamedRelation> relations;
 	private HashMap<String, Attribute> attributes;
+	private List<View> views;
+	private HashMap<String, Dictionary> dictionaries;
 
 
 	public Catalogue() {
 		this.relations = new HashMap<String, NamedRelation>();
 		this.attributes = new HashMap<String, Attribute>();
+		this.views = new ArrayList<View>();
+		this.dictionaries = new HashMap<String, Dictionary>();
 	}
 	
 	/**
@@ -54,12 +64,151 @@ public class Catalogue {
 	 * @return
 	 */
 	public Attribute createAttribute(String relName, String attName, int values) {
-		Attribute attr = new Attribute(attName, values);
-		attributes.put(attName, attr);
-		relations.get(relName).addAttribute(attr);
+		return addAttribute(relName, new Attribute(attName, values));
+	}
+	
+	/**
+	 * Create a new Attribute with the specified name, number of distinct
+	 * values and width in bytes, add it to the directory and associate it
+	 * with the specified NamedRelation.
+	 * 
+	 * @param relName
+	 * @param attName
+	 * @param values
+	 * @param width
+	 * @return
+	 */
+	public Attribute createAttribute(String relName, String attName, int values, int width) {
+		return addAttribute(relName, new Attribute(attName, values, width));
+	}
+	
+	/**
+	 * Add an Attribute to the directory and associate it with the
+	 * specified NamedRelation.
+	 * 
+	 * @param relName
+	 * @param attr
+	 * @return
+	 */
+	private Attribute addAttribute(String relName, Attribute attr) {
+		NamedRelation reln = relations.get(relName);
+		if (!(reln instanceof View)) {
+			attributes.put(attr.getName(), attr);
+		}
+		reln.addAttribute(attr);
 		return attr;
 	}
 	
+	/**
+	 * Create a new materialised View with the specified name and size,
+	 * built by joining the specified NamedRelations on the specified
+	 * predicates, and add it to the directory. Its attributes are then
+	 * added with createAttribute().
+	 * 
+	 * @param viewName
+	 * @param size
+	 * @param relNames
+	 * @param predicates
+	 * @return
+	 */
+	public View createView(String viewName, int size, List<String> relNames, List<Predicate> predicates) throws DatabaseException {
+		List<NamedRelation> relns = new ArrayList<NamedRelation>();
+		for (String relName : relNames) {
+			relns.add(getRelation(relName));
+		}
+		
+		View view = new View(viewName, size, relns, predicates);
+		relations.put(viewName, view);
+		views.add(view);
+		return view;
+	}
+	
+	/**
+	 * Return all of the materialised Views.
+	 * 
+	 * @return
+	 */
+	public List<View> getViews() {
+		return views;
+	}
+	
+	/**
+	 * Create a new Index on the specified attribute of the specified
+	 * NamedRelation.
+	 * 
+	 * @param relName
+	 * @param attName
+	 * @param type
+	 * @param clustered
+	 * @return
+	 */
+	public Index createIndex(String relName, String attName, Index.Type type, boolean clustered) throws DatabaseException {
+		NamedRelation reln = getRelation(relName);
+		Index index = new Index(reln, getAttribute(attName), type, clustered);
+		reln.addIndex(index);
+		return index;
+	}
+	
+	/**
+	 * Create a new ZoneMap on the specified attribute of the specified
+	 * NamedRelation.
+	 * 
+	 * @param relName
+	 * @param attName
+	 * @param clustered
+	 * @return
+	 */
+	public ZoneMap createZoneMap(String relName, String attName, boolean clustered) throws DatabaseException {
+		NamedRelation reln = getRelation(relName);
+		ZoneMap zoneMap = new ZoneMap(reln, getAttribute(attName), clustered);
+		reln.addZoneMap(zoneMap);
+		return zoneMap;
+	}
+	
+	/**
+	 * Create a new Dictionary with the specified name, and encode each of
+	 * the specified attributes with it, wherever they are stored (in their
+	 * NamedRelation, and in any Views which keep them).
+	 * 
+	 * @param dictName
+	 * @param attNames
+	 * @return
+	 */
+	public Dictionary createDictionary(String dictName, List<String> attNames) throws DatabaseException {
+		Dictionary dictionary = new Dictionary(dictName);
+		
+		for (String attName : attNames) {
+			Attribute attr = getAttribute(attName);
+			dictionary.addAttribute(attr);
+			attr.setDictionary(dictionary);
+			
+			for (NamedRelation reln : relations.values()) {
+				if (reln.getAttributes().contains(attr)) {
+					reln.getAttribute(attr).setDictionary(dictionary);
+				}
+			}
+		}
+		
+		dictionaries.put(dictName, dictionary);
+		return dictionary;
+	}
+	
+	/**
+	 * Return the Dictionary with the specified name.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public Dictionary getDictionary(String name) throws DatabaseException {
+		Dictionary dictionary = dictionaries.get(name);
+		
+		if (dictionary==null) {
+			throw new DatabaseException("Dictionary " + name + " not found");
+		}
+		
+		return dictionary;
+	}
+	
 	/**
 	 * Return the NamedRelation with the specified name.
 	 * 
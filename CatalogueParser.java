@@ -1,5 +1,8 @@
 package sjdb;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * This class parses a serialised system catalogue, and uses the
@@ -10,6 +13,38 @@ import java.io.*;
  * 
  * <relation name>:<tuple count>:<attr name>,<value count>:<attr name>,<value count>
  * 
+ * Each attribute may optionally declare its width in bytes, which is used
+ * by the cost model. Attributes which don't are taken to be strings of
+ * varying width, Attribute.DEFAULT_WIDTH bytes on average:
+ * 
+ * <attr name>,<value count>,<width>
+ * 
+ * Indexes are declared on lines of their own, after the relation they
+ * index, in the form:
+ * 
+ * @index:<relation name>:<attr name>:<hash|btree|bitmap>[:clustered]
+ * 
+ * Zone maps are declared the same way, clustered if the relation is
+ * stored in roughly the order of the attribute:
+ * 
+ * @zonemap:<relation name>:<attr name>[:clustered]
+ * 
+ * String attributes may be stored dictionary-encoded. Dictionaries are
+ * declared after the relations and views which store their attributes,
+ * and attributes which are joined with each other should share one, so
+ * that they are joined on its codes:
+ * 
+ * @dictionary:<dictionary name>:<attr name>,<attr name>
+ * 
+ * Materialised views are declared after the relations they are built
+ * from, giving the relations joined, the predicates applied (which may be
+ * empty) and then the attributes kept, as for a relation:
+ * 
+ * @view:<view name>:<tuple count>:<relation>,<relation>:<predicate>,<predicate>:<attr name>,<value count>
+ * 
+ * where each predicate is either <attr name>=<attr name> or
+ * <attr name>="<value>".
+ * 
  * @author nmg
  */
 public class CatalogueParser {
@@ -35,7 +70,19 @@ public class CatalogueParser {
 
 		try {
 			while ((line = this.read.readLine()) != null) {
-				parseRelation(line.split(":", 0));
+				if (line.trim().isEmpty()) {
+					continue;
+				} else if (line.startsWith("@index:")) {
+					parseIndex(line.split(":", 0));
+				} else if (line.startsWith("@zonemap:")) {
+					parseZoneMap(line.split(":", 0));
+				} else if (line.startsWith("@dictionary:")) {
+					parseDictionary(line.split(":", 0));
+				} else if (line.startsWith("@view:")) {
+					parseView(line.split(":", 0));
+				} else {
+					parseRelation(line.split(":", 0));
+				}
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -57,6 +104,64 @@ public class CatalogueParser {
 		String attr = parts[0];
 		int values = Integer.decode(parts[1]).intValue();
 		
-		catalogue.createAttribute(reln, attr, values);
+		if (parts.length > 2) {
+			catalogue.createAttribute(reln, attr, values, Integer.decode(parts[2]).intValue());
+		} else {
+			catalogue.createAttribute(reln, attr, values);
+		}
+	}
+	
+	private void parseIndex(String[] parts) throws DatabaseException {
+		String reln = parts[1];
+		String attr = parts[2];
+		Index.Type type = Index.Type.valueOf(parts[3].toUpperCase());
+		boolean clustered = parts.length > 4 && parts[4].equals("clustered");
+		
+		catalogue.createIndex(reln, attr, type, clustered);
+	}
+	
+	private void parseZoneMap(String[] parts) throws DatabaseException {
+		String reln = parts[1];
+		String attr = parts[2];
+		boolean clustered = parts.length > 3 && parts[3].equals("clustered");
+		
+		catalogue.createZoneMap(reln, attr, clustered);
+	}
+	
+	private void parseDictionary(String[] parts) throws DatabaseException {
+		String dict = parts[1];
+		List<String> attrs = Arrays.asList(parts[2].split(",", 0));
+		
+		catalogue.createDictionary(dict, attrs);
+	}
+	
+	private void parseView(String[] parts) throws DatabaseException {
+		String view = parts[1];
+		int size = Integer.decode(parts[2]).intValue();
+		List<String> relns = Arrays.asList(parts[3].split(",", 0));
+		List<Predicate> predicates = new ArrayList<Predicate>();
+		
+		for (String pred : parts[4].split(",", 0)) {
+			if (!pred.trim().isEmpty()) {
+				predicates.add(parsePredicate(pred.trim()));
+			}
+		}
+		
+		catalogue.createView(view, size, relns, predicates);
+		
+		for (int i = 5; i < parts.length; i++) {
+			parseAttribute(view, parts[i].split(",", 0));
+		}
+	}
+	
+	private Predicate parsePredicate(String pred) throws DatabaseException {
+		String[] sides = pred.split("=", 2);
+		Attribute left = catalogue.getAttribute(sides[0]);
+		
+		if (sides[1].startsWith("\"")) {
+			return new Predicate(new Attribute(left), sides[1].replace("\"", ""));
+		} else {
+			return new Predicate(new Attribute(left), new Attribute(catalogue.getAttribute(sides[1])));
+		}
 	}
 }
@@ -0,0 +1,107 @@
+package sjdb;
+
+/**
+ * This is an interface for a physical cost model. Each method returns the
+ * local cost of a single operator: the work done by that operator alone,
+ * not including the cost of producing its inputs.
+ * 
+ * Methods are called by the Estimator once the output relation of the
+ * operator (and of all of its inputs) has been estimated, so implementations
+ * may freely use getOutput() on the operator and its children.
+ * 
+ * @see Estimator
+ * @author Emily Shepherd
+ */
+public interface CostModel
+{
+	/**
+	 * Local cost of a Scan operator.
+	 * @param op Scan operator to be costed
+	 * @return Cost
+	 */
+	public double cost(Scan op);
+	/**
+	 * Local cost of an IndexScan operator.
+	 * @param op IndexScan operator to be costed
+	 * @return Cost
+	 */
+	public double cost(IndexScan op);
+	/**
+	 * Local cost of a BitmapScan operator.
+	 * @param op BitmapScan operator to be costed
+	 * @return Cost
+	 */
+	public double cost(BitmapScan op);
+	/**
+	 * Local cost of a Project operator.
+	 * @param op Project operator to be costed
+	 * @return Cost
+	 */
+	public double cost(Project op);
+	/**
+	 * Local cost of a Select operator.
+	 * @param op Select operator to be costed
+	 * @return Cost
+	 */
+	public double cost(Select op);
+	/**
+	 * Local cost of a Product operator.
+	 * @param op Product operator to be costed
+	 * @return Cost
+	 */
+	public double cost(Product op);
+	/**
+	 * Local cost of a Join operator.
+	 * @param op Join operator to be costed
+	 * @return Cost
+	 */
+	public double cost(Join op);
+	/**
+	 * Local cost of an Aggregate operator.
+	 * @param op Aggregate operator to be costed
+	 * @return Cost
+	 */
+	public double cost(Aggregate op);
+	/**
+	 * Local cost of a SemiJoin operator. As the right input of a semi-join
+	 * is shared with another part of the plan, it is not charged for again,
+	 * but materialising it for the semi-join is.
+	 * @param op SemiJoin operator to be costed
+	 * @return Cost
+	 */
+	public double cost(SemiJoin op);
+	/**
+	 * Local cost of a MultiwayJoin operator. Its AGM bound has been set
+	 * by the time this is called.
+	 * @param op MultiwayJoin operator to be costed
+	 * @return Cost
+	 */
+	public double cost(MultiwayJoin op);
+	/**
+	 * Local cost of a RuntimeFilter operator, including building the filter
+	 * from its source.
+	 * @param op RuntimeFilter operator to be costed
+	 * @return Cost
+	 */
+	public double cost(RuntimeFilter op);
+	/**
+	 * Local cost of a Sort operator.
+	 * @param op Sort operator to be costed
+	 * @return Cost
+	 */
+	public double cost(Sort op);
+	/**
+	 * Local cost of a Fetch operator.
+	 * @param op Fetch operator to be costed
+	 * @return Cost
+	 */
+	public double cost(Fetch op);
+	/**
+	 * Cost of writing an intermediate result out, or of reading it back in,
+	 * once. This is charged when a sub-plan's result is materialised so
+	 * that it can be shared.
+	 * @param reln Relation to be materialised
+	 * @return Cost
+	 */
+	public double spool(Relation reln);
+}
@@ -0,0 +1,199 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Finds the cheapest bushy join tree for a JoinGraph by dynamic programming
+ * 
+ * Every connected set of relations is built up, smallest first, from every
+ * way of splitting it into two connected sets with a predicate between
+ * them. For each set, the cheapest plan is kept, along with any plans which
+ * deliver an interesting order. No Products are ever considered.
+ * 
+ * This takes O(3^n) time for n relations, so is only suitable for small
+ * graphs. If it is cancelled before it completes, it gives up.
+ * 
+ * Given the cost of a complete plan as an upper bound (eg from the
+ * GreedyEnumerator), it prunes as it goes. Costs are cumulative, so a
+ * complete plan costs at least as much as any sub-plan in it, plus the
+ * cheapest way of reading each relation the sub-plan leaves out. A sub-plan
+ * for which that already exceeds the bound can never be part of a better
+ * plan, and pairs whose costs add up to too much aren't even joined.
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class DPEnumerator
+{
+	/**
+	 * The largest graph this can be used for, as sets are held as int masks
+	 */
+	public static final int MAX_RELATIONS = 20;
+	
+	/**
+	 * The graph to enumerate
+	 */
+	private JoinGraph graph;
+	
+	/**
+	 * Tells enumeration when to give up
+	 */
+	private CancellationToken token;
+	
+	/**
+	 * The cost of a known complete plan, which nothing kept may exceed
+	 */
+	private double bound = Double.POSITIVE_INFINITY;
+	
+	/**
+	 * The number of candidate pairs and plans pruned by the bound
+	 */
+	private long pruned = 0;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param graph The graph to enumerate
+	 * @param token Tells enumeration when to give up
+	 */
+	public DPEnumerator(JoinGraph graph, CancellationToken token)
+	{
+		this.graph = graph;
+		this.token = token;
+	}
+	
+	/**
+	 * Sets the upper bound for pruning
+	 * 
+	 * @param bound The cost of a known plan joining every relation
+	 */
+	public void setBound(double bound)
+	{
+		this.bound = bound;
+	}
+	
+	/**
+	 * Gets the number of candidates pruned by the bound
+	 * 
+	 * This counts both the pairs of sub-plans which were never joined and
+	 * the joined plans which were thrown away.
+	 * 
+	 * @return The number pruned
+	 */
+	public long getPruned()
+	{
+		return pruned;
+	}
+	
+	/**
+	 * Finds the cheapest plans joining every relation in the graph
+	 * 
+	 * @return The candidate plans, cheapest first, or null if cancelled
+	 *    first. This is empty if nothing could beat the bound.
+	 */
+	public List<PlanCandidate> enumerate()
+	{
+		int n = graph.size();
+		
+		if (n > MAX_RELATIONS) return null;
+		
+		int full = (1 << n) - 1;
+		ArrayList<List<PlanCandidate>> best = new ArrayList<List<PlanCandidate>>(full + 1);
+		
+		for (int s = 0; s <= full; s++)
+		{
+			best.add(null);
+		}
+		
+		// The cheapest way of reading each relation, which every complete
+		// plan must pay for at least
+		double[] leaf = new double[n];
+		double total  = 0;
+		
+		for (int i = 0; i < n; i++)
+		{
+			best.set(1 << i, graph.getRelation(i));
+			leaf[i] = graph.getRelation(i).get(0).getCost();
+			total  += leaf[i];
+		}
+		
+		// Any proper subset of s is numerically smaller than s, so counting up
+		// guarantees both halves of a split have been done already
+		for (int s = 1; s <= full; s++)
+		{
+			if (Integer.bitCount(s) < 2) continue;
+			
+			if (token.isCancelled()) return null;
+			
+			ArrayList<PlanCandidate> options = new ArrayList<PlanCandidate>();
+			double rest                      = total;
+			
+			for (int i = 0; i < n; i++)
+			{
+				if ((s & (1 << i)) != 0) rest -= leaf[i];
+			}
+			
+			for (int s1 = (s - 1) & s; s1 > 0; s1 = (s1 - 1) & s)
+			{
+				int s2                     = s ^ s1;
+				List<PlanCandidate> lefts  = best.get(s1);
+				List<PlanCandidate> rights = best.get(s2);
+				
+				// Sets that aren't connected have no plans
+				if (lefts == null || rights == null) continue;
+				
+				BitSet leftSet  = toBitSet(s1);
+				BitSet rightSet = toBitSet(s2);
+				
+				if (!graph.isConnected(leftSet, rightSet)) continue;
+				
+				for (PlanCandidate lc : lefts)
+				{
+					for (PlanCandidate rc : rights)
+					{
+						if (lc.getCost() + rc.getCost() + rest > bound)
+						{
+							pruned++;
+							continue;
+						}
+						
+						PlanCandidate joined = graph.join(lc, leftSet, rc, rightSet);
+						
+						if (joined.getCost() + rest > bound)
+						{
+							pruned++;
+							continue;
+						}
+						
+						PlanCandidate.add(options, joined);
+					}
+				}
+			}
+			
+			if (!options.isEmpty())
+			{
+				best.set(s, options);
+			}
+		}
+		
+		if (best.get(full) == null)
+		{
+			return new ArrayList<PlanCandidate>();
+		}
+		
+		return best.get(full);
+	}
+	
+	/**
+	 * Converts a set held as an int mask into a BitSet
+	 * 
+	 * @param mask The mask
+	 * @return The BitSet
+	 */
+	private static BitSet toBitSet(int mask)
+	{
+		return BitSet.valueOf(new long[] { mask });
+	}
+}
@@ -0,0 +1,806 @@
+package sjdb;
+
+import java.util.List;
+
+/**
+ * A simple I/O and CPU cost model
+ * 
+ * Each operator is charged IO_COST for every page it reads or writes, and
+ * CPU_COST for every tuple it handles. The weights can be changed to suit
+ * the hardware being planned for.
+ * 
+ * Relations are read through a buffer pool shared by the whole plan. It is
+ * managed by a scan-resistant policy (CLOCK with a cold queue, or LRU-2),
+ * so pages read over and over again stay cached, and pages read only once
+ * by a large Scan don't flush them out. Only operators which read pages
+ * more than once benefit (see getPageFetches()).
+ * 
+ * Comparing or hashing the integer code of a dictionary-encoded value is
+ * much cheaper than doing so to the string it stands for, so operators
+ * whose predicate is compared on codes (see isEncoded()) are charged half
+ * the usual CPU cost for the tuples they compare.
+ * 
+ * Selects and hash joins over fixed-width attributes of at most 8 bytes
+ * (dictionary codes, and attributes whose width the catalogue declares,
+ * such as numbers) compare and hash their values a vector register at a
+ * time, L values at once, where:
+ *   L = max(1, V / W)
+ * for V the width of a vector register, and W the width of an attribute.
+ * V is found from the Vector API (jdk.incubator.vector) when it is
+ * available, and is 0 otherwise, when every value is handled on its own.
+ * 
+ * In the formulas below:
+ *   + T(R) is the number of tuples in relation R
+ *   + P(R) is the number of pages in relation R (see Relation.getPageCount())
+ *   + B is the number of pages in the buffer pool
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class DefaultCostModel implements CostModel
+{
+	/**
+	 * Cost of reading or writing a single page
+	 */
+	private double ioCost;
+	
+	/**
+	 * Cost of processing a single tuple
+	 */
+	private double cpuCost;
+	
+	/**
+	 * Number of pages of working memory available to a single operator
+	 */
+	private long memoryPages;
+	
+	/**
+	 * The most runs an external sort merges at once, or 0 to merge as many
+	 * as memory allows
+	 */
+	private long fanOut;
+	
+	/**
+	 * Number of pages in the buffer pool relations are read through
+	 */
+	private long bufferPages;
+	
+	/**
+	 * Width of a vector register in bytes, or 0 if values aren't handled in
+	 * vectors
+	 */
+	private int vectorBytes;
+	
+	/**
+	 * Constructor
+	 * 
+	 * Uses a page costing one hundred times as much as a tuple, 64MB of
+	 * working memory, a 1GB buffer pool and vectors if they are available
+	 */
+	public DefaultCostModel()
+	{
+		this(1.0, 0.01);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param ioCost The cost of reading or writing a single page
+	 * @param cpuCost The cost of processing a single tuple
+	 */
+	public DefaultCostModel(double ioCost, double cpuCost)
+	{
+		this(ioCost, cpuCost, 64L * 1024 * 1024 / Relation.PAGE_SIZE);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param ioCost The cost of reading or writing a single page
+	 * @param cpuCost The cost of processing a single tuple
+	 * @param memoryPages The pages of working memory available to an operator
+	 */
+	public DefaultCostModel(double ioCost, double cpuCost, long memoryPages)
+	{
+		this(ioCost, cpuCost, memoryPages, 0);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param ioCost The cost of reading or writing a single page
+	 * @param cpuCost The cost of processing a single tuple
+	 * @param memoryPages The pages of working memory available to an operator
+	 * @param fanOut The most runs an external sort merges at once, or 0 to
+	 *    merge as many as memory allows
+	 */
+	public DefaultCostModel(double ioCost, double cpuCost, long memoryPages, long fanOut)
+	{
+		this(ioCost, cpuCost, memoryPages, fanOut, 1024L * 1024 * 1024 / Relation.PAGE_SIZE);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param ioCost The cost of reading or writing a single page
+	 * @param cpuCost The cost of processing a single tuple
+	 * @param memoryPages The pages of working memory available to an operator
+	 * @param fanOut The most runs an external sort merges at once, or 0 to
+	 *    merge as many as memory allows
+	 * @param bufferPages The pages in the buffer pool
+	 */
+	public DefaultCostModel(double ioCost, double cpuCost, long memoryPages, long fanOut, long bufferPages)
+	{
+		this(ioCost, cpuCost, memoryPages, fanOut, bufferPages, findVectorBytes());
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param ioCost The cost of reading or writing a single page
+	 * @param cpuCost The cost of processing a single tuple
+	 * @param memoryPages The pages of working memory available to an operator
+	 * @param fanOut The most runs an external sort merges at once, or 0 to
+	 *    merge as many as memory allows
+	 * @param bufferPages The pages in the buffer pool
+	 * @param vectorBytes The width of a vector register in bytes, or 0 to
+	 *    handle every value on its own
+	 */
+	public DefaultCostModel(double ioCost, double cpuCost, long memoryPages, long fanOut, long bufferPages, int vectorBytes)
+	{
+		this.ioCost      = ioCost;
+		this.cpuCost     = cpuCost;
+		this.memoryPages = memoryPages;
+		this.fanOut      = fanOut;
+		this.bufferPages = bufferPages;
+		this.vectorBytes = vectorBytes;
+	}
+	
+	/**
+	 * Finds the width of the preferred vector register of this machine,
+	 * from the Vector API
+	 * 
+	 * The API is an incubator module, which is only there if the JVM was
+	 * started with --add-modules jdk.incubator.vector, so it is looked up
+	 * reflectively, and its absence taken to mean values are handled one at
+	 * a time.
+	 * 
+	 * @return The width of a vector register in bytes, or 0 if the Vector
+	 *    API isn't available
+	 */
+	public static int findVectorBytes()
+	{
+		try
+		{
+			Class<?> species = Class.forName("jdk.incubator.vector.VectorSpecies");
+			Object preferred = Class.forName("jdk.incubator.vector.IntVector")
+					.getField("SPECIES_PREFERRED").get(null);
+			
+			return (Integer)species.getMethod("vectorByteSize").invoke(preferred);
+		}
+		catch (Exception e)
+		{
+			return 0;
+		}
+		catch (LinkageError e)
+		{
+			return 0;
+		}
+	}
+	
+	/**
+	 * @return The cost of reading or writing a single page
+	 */
+	public double getIOCost()
+	{
+		return ioCost;
+	}
+	
+	/**
+	 * @return The cost of processing a single tuple
+	 */
+	public double getCPUCost()
+	{
+		return cpuCost;
+	}
+	
+	/**
+	 * @return The pages of working memory available to an operator
+	 */
+	public long getMemoryPages()
+	{
+		return memoryPages;
+	}
+	
+	/**
+	 * @return The most runs an external sort merges at once, or 0 for as
+	 *    many as memory allows
+	 */
+	public long getFanOut()
+	{
+		return fanOut;
+	}
+	
+	/**
+	 * @return The pages in the buffer pool
+	 */
+	public long getBufferPages()
+	{
+		return bufferPages;
+	}
+	
+	/**
+	 * @return The width of a vector register in bytes, or 0 if values
+	 *    aren't handled in vectors
+	 */
+	public int getVectorBytes()
+	{
+		return vectorBytes;
+	}
+	
+	/**
+	 * Returns the number of values of an attribute compared or hashed at
+	 * once, L (see above)
+	 * 
+	 * Attributes whose width is only assumed are taken to be strings, which
+	 * vary in width, so can't be packed into a vector.
+	 * 
+	 * @param attribute The attribute
+	 * @return The number of lanes, 1 if values are handled one at a time
+	 */
+	public int getLanes(Attribute attribute)
+	{
+		int width = attribute.getWidth();
+		
+		if (!attribute.isFixedWidth() || width <= 0 || width > 8) return 1;
+		
+		return Math.max(1, vectorBytes / width);
+	}
+	
+	/**
+	 * Returns the pages actually read from disk when a relation's pages are
+	 * accessed at random through the buffer pool
+	 * 
+	 * For k accesses to a relation of N pages, while the pages touched still
+	 * fit in the pool, each is only read once (Cardenas):
+	 *   N.(1 - (1 - 1/N)^k)
+	 * Once the pool is full, which takes x accesses, where:
+	 *   x = ln(1 - B/N) / ln(1 - 1/N)
+	 * each further access misses with probability 1 - B/N (Mackert and
+	 * Lohman), as the policy keeps B of the N pages resident:
+	 *   B + (k - x).(1 - B/N)
+	 * 
+	 * @param pages The number of pages, N
+	 * @param accesses The number of accesses, k
+	 * @return The pages read
+	 */
+	public double getPageFetches(long pages, double accesses)
+	{
+		if (pages <= 1) return Math.min(pages, accesses);
+		
+		double N = pages;
+		
+		if (pages > bufferPages)
+		{
+			double x = Math.log(1 - bufferPages / N) / Math.log(1 - 1 / N);
+			
+			if (accesses > x)
+			{
+				return bufferPages + (accesses - x) * (1 - bufferPages / N);
+			}
+		}
+		
+		return N * (1 - Math.pow(1 - 1 / N, accesses));
+	}
+	
+	/**
+	 * Scans read every page and every tuple:
+	 *   P(R).io + T(R).cpu
+	 * except that a Scan applying predicates on attributes with zone maps
+	 * skips every block they rule out, without decoding it. With Z the
+	 * fraction of blocks left by each zone map (see
+	 * ZoneMap.getBlockFraction()), assuming they prune independently:
+	 *   Z1...Zn.(P(R).io + T(R).cpu)
+	 */
+	@Override
+	public double cost(Scan op)
+	{
+		NamedRelation R = (NamedRelation)op.getRelation();
+		double read     = 1;
+		
+		for (Predicate p : op.getPredicates())
+		{
+			ZoneMap zoneMap = R.getZoneMap(p.getLeftAttribute());
+			
+			if (zoneMap != null) read *= zoneMap.getBlockFraction();
+		}
+		
+		return read * (R.getPageCount() * ioCost + (double)R.getTupleCount() * cpuCost);
+	}
+	
+	/**
+	 * Index scans read the index, then fetch each match (which, for an
+	 * IndexScan reading in index order, is every tuple). Unclustered
+	 * indexes fetch a page per match; clustered ones read matches
+	 * sequentially:
+	 *   (L(I) + T(O)).io + T(O).cpu     (unclustered)
+	 *   (L(I) + P(O)).io + T(O).cpu     (clustered)
+	 * where L(I) is the pages read per lookup
+	 */
+	@Override
+	public double cost(IndexScan op)
+	{
+		Relation O  = op.getOutput();
+		Index index = op.getIndex();
+		double io   = index.getLookupPages();
+		
+		if (index.isClustered())
+		{
+			io += O.getPageCount();
+		}
+		else
+		{
+			io += O.getTupleCount();
+		}
+		
+		return io * ioCost + (double)O.getTupleCount() * cpuCost;
+	}
+	
+	/**
+	 * Bitmap scans read the bitmap of each value, intersect them, touching
+	 * each of their row IDs, and then fetch the matches. As the row IDs come
+	 * out in order, each page holding a match is read just once (Cardenas):
+	 *   (L(I1) + ... + L(In) + F).io
+	 *     + (T(R)/V(R, A1) + ... + T(R)/V(R, An) + T(O)).cpu
+	 *   F = P(R).(1 - (1 - 1/P(R))^T(O))
+	 * where L(Ii) is the pages of the bitmap read from index Ii (see
+	 * Index.getLookupPages())
+	 */
+	@Override
+	public double cost(BitmapScan op)
+	{
+		Relation R = op.getRelation();
+		Relation O = op.getOutput();
+		double P   = Math.max(R.getPageCount(), 1);
+		double io  = P * (1 - Math.pow(1 - 1 / P, O.getTupleCount()));
+		double cpu = O.getTupleCount();
+		
+		for (Index index : op.getIndexes())
+		{
+			io  += index.getLookupPages();
+			cpu += (double)R.getTupleCount() / Math.max(index.getAttribute().getValueCount(), 1);
+		}
+		
+		return io * ioCost + cpu * cpuCost;
+	}
+	
+	/**
+	 * Projects are fused into the operator below them, which simply emits
+	 * fewer attributes, so cost nothing more. Only a Project over another
+	 * Project, which has nothing to fuse into, touches each input tuple:
+	 *   T(R).cpu
+	 */
+	@Override
+	public double cost(Project op)
+	{
+		if (!(op.getInput() instanceof Project)) return 0;
+		
+		return (double)op.getInput().getOutput().getTupleCount() * cpuCost;
+	}
+	
+	/**
+	 * Selects are pipelined, so only touch each input tuple, and compare a
+	 * vector of L values at once into a selection mask:
+	 *   T(R).cpu / L
+	 * or T(R).cpu / 2.L if they compare codes
+	 */
+	@Override
+	public double cost(Select op)
+	{
+		Relation R = op.getInput().getOutput();
+		double cpu = R.getTupleCount();
+		
+		if (isEncoded(op.getPredicate(), R, null)) cpu /= 2;
+		
+		return cpu / getLanes(find(op.getPredicate().getLeftAttribute(), R, null)) * cpuCost;
+	}
+	
+	/**
+	 * Products are charged as a block nested loop, re-reading the right
+	 * input once for each page of the left:
+	 *   (P(R) + P(R).P(S)).io + T(R).T(S).cpu
+	 */
+	@Override
+	public double cost(Product op)
+	{
+		Relation R = op.getLeft().getOutput();
+		Relation S = op.getRight().getOutput();
+		
+		return ((double)R.getPageCount() + (double)R.getPageCount() * S.getPageCount()) * ioCost
+				+ (double)R.getTupleCount() * S.getTupleCount() * cpuCost;
+	}
+	
+	/**
+	 * Joins are charged according to their algorithm. A Join with no
+	 * algorithm chosen yet is charged as a hash join.
+	 * 
+	 * For left input R (build / outer), right input S and output O:
+	 *   HASH:
+	 *     (K.(T(R) + (T(R) + T(S)) / L) + T(O)).cpu, plus the pages
+	 *     spilled if P(R) doesn't fit in memory (see getSpillPages());
+	 *     the keys of both inputs are hashed L at a time
+	 *   SORT_MERGE (over inputs which are already sorted):
+	 *     (K.(T(R) + T(S)) + T(O)).cpu
+	 *   where K is 1/2 if the join attributes share a dictionary, so are
+	 *   hashed or compared as codes, and 1 otherwise
+	 *   INDEX_NESTED_LOOP (probing index I on S, S is never scanned):
+	 *     T(R).L(I).io + F.io + (T(R) + T(O)).cpu
+	 *     where L(I) is the pages read per lookup, and F is the pages of the
+	 *     relation under S fetched through the buffer pool for the matches
+	 *     (see getPageFetches()): one access per match, unless the index is
+	 *     clustered, when matches are read a page at a time
+	 *   BLOCK_NESTED_LOOP:
+	 *     (ceil(P(R)/M) - 1).max(0, P(S) - B).io + T(R).T(S).cpu
+	 *     where M is the pages of working memory; S is read again for each
+	 *     block of R after the first, but only the pages which didn't stay
+	 *     in the buffer pool are read from disk. The first read of S is
+	 *     already part of its own cost
+	 */
+	@Override
+	public double cost(Join op)
+	{
+		Relation R = op.getLeft().getOutput();
+		Relation S = op.getRight().getOutput();
+		Relation O = op.getOutput();
+		double io  = 0;
+		double cpu = 0;
+		
+		double K   = isEncoded(op.getPredicate(), R, S) ? 0.5 : 1;
+		
+		Join.Algorithm algorithm = op.getAlgorithm();
+		if (algorithm == null) algorithm = Join.Algorithm.HASH;
+		
+		switch (algorithm)
+		{
+			case HASH:
+				int L = getLanes(find(op.getPredicate().getLeftAttribute(), R, S));
+				cpu   = K * (R.getTupleCount() + ((double)R.getTupleCount() + S.getTupleCount()) / L)
+						+ O.getTupleCount();
+				
+				io  = getSpillPages(R, S);
+				break;
+				
+			case SORT_MERGE:
+				cpu = K * ((double)R.getTupleCount() + S.getTupleCount()) + O.getTupleCount();
+				break;
+				
+			case INDEX_NESTED_LOOP:
+				Index index = op.getIndex();
+				long pages  = getStoredRelation(op.getRight()).getPageCount();
+				io          = (double)R.getTupleCount() * index.getLookupPages();
+				cpu         = (double)R.getTupleCount() + O.getTupleCount();
+				
+				// Unclustered indexes fetch a page per matching tuple. Clustered
+				// ones read matches sequentially.
+				if (index.isClustered())
+				{
+					io += getPageFetches(pages, O.getPageCount());
+				}
+				else
+				{
+					io += getPageFetches(pages, O.getTupleCount());
+				}
+				break;
+				
+			case BLOCK_NESTED_LOOP:
+				double blocks = Math.ceil((double)R.getPageCount() / memoryPages);
+				io            = (blocks - 1) * Math.max(0, S.getPageCount() - bufferPages);
+				cpu           = (double)R.getTupleCount() * S.getTupleCount();
+				break;
+		}
+		
+		return io * ioCost + cpu * cpuCost;
+	}
+	
+	/**
+	 * Returns whether a predicate is evaluated on dictionary codes rather
+	 * than the values they stand for: either attr="value" on an encoded
+	 * attribute, whose value is looked up in the dictionary just once, or
+	 * attr=attr on two attributes encoded with the same dictionary
+	 * 
+	 * @param p The predicate
+	 * @param R The input holding the predicate's attributes, or one of them
+	 * @param S The input holding the other attribute, or null
+	 * @return True if the predicate compares codes
+	 */
+	private static boolean isEncoded(Predicate p, Relation R, Relation S)
+	{
+		Dictionary left = getDictionary(p.getLeftAttribute(), R, S);
+		
+		if (left == null) return false;
+		if (p.equalsValue()) return true;
+		
+		return left == getDictionary(p.getRightAttribute(), R, S);
+	}
+	
+	/**
+	 * Finds the dictionary an attribute is encoded with in the inputs of an
+	 * operator. Attributes named in predicates aren't taken from the
+	 * catalogue, so only the inputs' copies know it.
+	 * 
+	 * @param a The attribute
+	 * @param R One input
+	 * @param S Another input, or null
+	 * @return The dictionary, or null if the attribute isn't encoded
+	 */
+	private static Dictionary getDictionary(Attribute a, Relation R, Relation S)
+	{
+		return find(a, R, S).getDictionary();
+	}
+	
+	/**
+	 * Finds an input's copy of an attribute named in a predicate
+	 * 
+	 * @param a The attribute
+	 * @param R One input
+	 * @param S Another input, or null
+	 * @return The input's copy, or the attribute itself if neither has it
+	 */
+	private static Attribute find(Attribute a, Relation R, Relation S)
+	{
+		for (Relation input : new Relation[] { R, S })
+		{
+			if (input != null && input.getAttributes().contains(a))
+			{
+				return input.getAttribute(a);
+			}
+		}
+		
+		return a;
+	}
+	
+	/**
+	 * Finds the relation an index nested loop join's inner input reads
+	 * 
+	 * @param inner The inner input, a Scan with any number of Selects or
+	 *    Projects above it
+	 * @return The output of the Scan
+	 */
+	private static Relation getStoredRelation(Operator inner)
+	{
+		while (inner instanceof Select || inner instanceof Project)
+		{
+			inner = ((UnaryOperator)inner).getInput();
+		}
+		
+		return inner.getOutput();
+	}
+	
+	/**
+	 * Returns the pages a hybrid hash join writes out and reads back in
+	 * 
+	 * If the build side, R, doesn't fit in the M pages of memory, both
+	 * inputs are split into B partitions, where:
+	 *   B = ceil((P(R) - M) / (M - 1))
+	 * leaving M - B pages to keep the first partition of R in memory, so
+	 * that a fraction of both inputs never touches disk:
+	 *   q = (M - B) / P(R)
+	 * The rest is written once and read back once:
+	 *   2.(1 - q).(P(R) + P(S))
+	 * 
+	 * If B doesn't fit in memory either, a grace partitioning pass splits
+	 * both inputs M - 1 ways, all to disk, and each pair of partitions is
+	 * joined the same way, recursively.
+	 * 
+	 * @param R The build side
+	 * @param S The probe side
+	 * @return The pages written and read, 0 if R fits in memory
+	 */
+	public double getSpillPages(Relation R, Relation S)
+	{
+		return spill(R.getPageCount(), S.getPageCount());
+	}
+	
+	/**
+	 * Returns the number of partitions a hybrid hash join spills to disk
+	 * (see getSpillPages())
+	 * 
+	 * @param R The build side
+	 * @return The number of partitions, counting those of every recursive
+	 *    pass, 0 if R fits in memory
+	 */
+	public long getPartitionCount(Relation R)
+	{
+		return partitions(R.getPageCount());
+	}
+	
+	/**
+	 * @see getSpillPages()
+	 * @param build The pages of the build side
+	 * @param probe The pages of the probe side
+	 * @return The pages written and read
+	 */
+	private double spill(double build, double probe)
+	{
+		if (build <= memoryPages) return 0;
+		
+		long fanOut = Math.max(memoryPages - 1, 2);
+		double B    = Math.ceil((build - memoryPages) / fanOut);
+		
+		if (B < memoryPages)
+		{
+			double q = (memoryPages - B) / build;
+			
+			return 2 * (1 - q) * (build + probe);
+		}
+		
+		return 2 * (build + probe) + fanOut * spill(build / fanOut, probe / fanOut);
+	}
+	
+	/**
+	 * @see getPartitionCount()
+	 * @param build The pages of the build side
+	 * @return The number of partitions
+	 */
+	private long partitions(double build)
+	{
+		if (build <= memoryPages) return 0;
+		
+		long fanOut = Math.max(memoryPages - 1, 2);
+		long B      = (long)Math.ceil((build - memoryPages) / fanOut);
+		
+		if (B < memoryPages) return B;
+		
+		return fanOut + fanOut * partitions(build / fanOut);
+	}
+	
+	/**
+	 * Aggregates touch each input tuple. A STREAM aggregate, over input
+	 * already ordered on its group, needs no more. A HASH aggregate (the
+	 * default) holds a table of the groups, and if that doesn't fit in
+	 * memory, partitions its input first:
+	 *   T(R).cpu, plus 2.P(R).io if P(O) > M
+	 * where M is the pages of working memory
+	 */
+	@Override
+	public double cost(Aggregate op)
+	{
+		Relation R = op.getInput().getOutput();
+		Relation O = op.getOutput();
+		double io  = 0;
+		
+		if (op.getAlgorithm() != Aggregate.Algorithm.STREAM && O.getPageCount() > memoryPages)
+		{
+			io = 2.0 * R.getPageCount();
+		}
+		
+		return io * ioCost + (double)R.getTupleCount() * cpuCost;
+	}
+	
+	/**
+	 * Semi-joins build a hash table of the join attribute values of the
+	 * right input S, then probe it with each tuple of the left input R:
+	 *   (T(R) + T(S)).cpu
+	 * or (T(R) + T(S)).cpu / 2 if the attributes share a dictionary
+	 * 
+	 * S is computed once for the part of the plan it is shared with, so
+	 * this use of it has to be spooled and read back:
+	 *   2.P(S).io
+	 */
+	@Override
+	public double cost(SemiJoin op)
+	{
+		Relation R = op.getLeft().getOutput();
+		Relation S = op.getRight().getOutput();
+		double io  = 2.0 * S.getPageCount();
+		double cpu = (double)R.getTupleCount() + S.getTupleCount();
+		
+		if (isEncoded(op.getPredicate(), R, S)) cpu /= 2;
+		
+		return io * ioCost + cpu * cpuCost;
+	}
+	
+	/**
+	 * Multi-way joins first sort each input R into a trie, which takes an
+	 * external merge pass if it doesn't fit in memory:
+	 *   T(R).log2(T(R)).cpu, plus 2.P(R).io if P(R) > M
+	 * The join then intersects the k inputs one attribute at a time. This
+	 * never does more than k steps for each tuple of the AGM bound, B, on
+	 * the output, O:
+	 *   (k.B + T(O)).cpu
+	 */
+	@Override
+	public double cost(MultiwayJoin op)
+	{
+		List<Operator> inputs = op.getInputs();
+		double io             = 0;
+		double cpu            = 0;
+		
+		for (Operator input : inputs)
+		{
+			Relation R = input.getOutput();
+			cpu       += R.getTupleCount() * (Math.log(Math.max(R.getTupleCount(), 2)) / Math.log(2));
+			
+			if (R.getPageCount() > memoryPages)
+			{
+				io += 2.0 * R.getPageCount();
+			}
+		}
+		
+		cpu += (double)inputs.size() * op.getBound() + op.getOutput().getTupleCount();
+		
+		return io * ioCost + cpu * cpuCost;
+	}
+	
+	/**
+	 * Runtime filters insert the join attribute value of each tuple of their
+	 * source S, then probe with each tuple of their input R. A Bloom filter
+	 * is small enough to stay in cache, and each insert or probe only tests
+	 * a few bits, so these are charged a quarter of the usual CPU cost:
+	 *   (T(R) + T(S)).cpu / 4
+	 */
+	@Override
+	public double cost(RuntimeFilter op)
+	{
+		Relation R = op.getInput().getOutput();
+		Relation S = op.getSource().getOutput();
+		
+		return ((double)R.getTupleCount() + S.getTupleCount()) * cpuCost / 4;
+	}
+	
+	/**
+	 * Sorts compare each tuple log2(T(R)) times. If P(R) doesn't fit in
+	 * memory, replacement selection writes runs averaging 2.M pages, which
+	 * are merged F at a time, where F is the fan-out (at most M - 1):
+	 *   runs = ceil(P(R) / 2.M)
+	 *   passes = max(1, ceil(log_F(runs)))
+	 * Every pass but the last writes P(R) pages, and every pass reads them
+	 * back, as well as the runs being written in the first place:
+	 *   2.P(R).passes.io + T(R).log2(T(R)).cpu
+	 */
+	@Override
+	public double cost(Sort op)
+	{
+		Relation R = op.getInput().getOutput();
+		double cpu = R.getTupleCount() * (Math.log(Math.max(R.getTupleCount(), 2)) / Math.log(2));
+		double io  = 0;
+		
+		if (R.getPageCount() > memoryPages)
+		{
+			long F        = Math.max(fanOut > 0 ? Math.min(fanOut, memoryPages - 1) : memoryPages - 1, 2);
+			double runs   = Math.ceil(R.getPageCount() / (2.0 * memoryPages));
+			double passes = Math.max(1, Math.ceil(Math.log(runs) / Math.log(F)));
+			io            = 2.0 * R.getPageCount() * passes;
+		}
+		
+		return io * ioCost + cpu * cpuCost;
+	}
+	
+	/**
+	 * Fetches look up each input tuple's row ID in the relation R they fetch
+	 * from. Row IDs arrive in whatever order the joins beneath left them,
+	 * so each lookup is a random access to the pages of R, through the
+	 * buffer pool (see getPageFetches()):
+	 *   F.io + T(I).cpu
+	 * for input I, where F is the pages fetched
+	 */
+	@Override
+	public double cost(Fetch op)
+	{
+		Relation I = op.getInput().getOutput();
+		double F   = getPageFetches(op.getRelation().getPageCount(), I.getTupleCount());
+		
+		return F * ioCost + (double)I.getTupleCount() * cpuCost;
+	}
+	
+	/**
+	 * Materialised results are written or read a page at a time, touching
+	 * every tuple:
+	 *   P(R).io + T(R).cpu
+	 */
+	@Override
+	public double spool(Relation R)
+	{
+		return R.getPageCount() * ioCost + (double)R.getTupleCount() * cpuCost;
+	}
+}
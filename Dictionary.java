@@ -0,0 +1,128 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This class represents a dictionary declared in the system catalogue:
+ * a sorted table of the distinct values of one or more attributes, each of
+ * which is stored as the integer code of its value in the table rather
+ * than as the value itself.
+ * 
+ * An attr="value" Select looks the value up once, and then compares
+ * codes. Attributes which share a dictionary give equal values equal
+ * codes, so equi-joins between them hash and compare the codes too, in
+ * hash tables keyed by primitive ints, and never touch the strings.
+ * 
+ * @author Emily Shepherd
+ */
+public class Dictionary
+{
+	private String name;
+	
+	/**
+	 * The attributes encoded with this dictionary
+	 */
+	private List<Attribute> attributes;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param name The name of the dictionary
+	 */
+	public Dictionary(String name)
+	{
+		this.name       = name;
+		this.attributes = new ArrayList<Attribute>();
+	}
+	
+	/**
+	 * @return The name of the dictionary
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * @return The attributes encoded with this dictionary
+	 */
+	public List<Attribute> getAttributes()
+	{
+		return attributes;
+	}
+	
+	/**
+	 * Adds an attribute to those encoded with this dictionary
+	 * 
+	 * @param attribute The attribute
+	 */
+	public void addAttribute(Attribute attribute)
+	{
+		attributes.add(attribute);
+	}
+	
+	/**
+	 * Returns the number of entries in the dictionary
+	 * 
+	 * The attributes sharing a dictionary are expected to be joined with
+	 * each other, so the values of each are taken to be drawn from those of
+	 * the attribute with the most, as a foreign key's are from its key's.
+	 * 
+	 * @return The number of entries
+	 */
+	public int getSize()
+	{
+		int size = 0;
+		
+		for (Attribute attribute : attributes)
+		{
+			size = Math.max(size, attribute.getValueCount());
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Returns the width of a single code: the fewest bytes (1, 2 or 4) that
+	 * can number every entry
+	 * 
+	 * @return The width of a code, in bytes
+	 */
+	public int getCodeWidth()
+	{
+		int size = getSize();
+		
+		if (size <= 1 << 8) return 1;
+		if (size <= 1 << 16) return 2;
+		
+		return 4;
+	}
+	
+	/**
+	 * Renders this dictionary in the syntax used in the system catalogue
+	 * 
+	 * @return The rendering of this dictionary
+	 */
+	public String render()
+	{
+		String ret               = "@dictionary:" + name + ":";
+		Iterator<Attribute> iter = attributes.iterator();
+		
+		while (iter.hasNext())
+		{
+			ret += iter.next().getName();
+			
+			if (iter.hasNext()) ret += ",";
+		}
+		
+		return ret;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return render();
+	}
+}
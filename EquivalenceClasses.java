@@ -0,0 +1,133 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Groups Attributes into classes of attributes known to be equal
+ * 
+ * This is a simple union-find. Each attr=attr predicate unions its two
+ * attributes, so that if a=b and b=c, then a, b and c all end up in the
+ * same class, and a=c is known to hold.
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class EquivalenceClasses
+{
+	/**
+	 * Maps each attribute to its parent in the union-find forest
+	 * 
+	 * Attributes which map to themselves are the representatives of their
+	 * class. Attributes which haven't been seen aren't present.
+	 */
+	private LinkedHashMap<Attribute, Attribute> parents = new LinkedHashMap<Attribute, Attribute>();
+	
+	/**
+	 * Returns the representative of the given attribute's class
+	 * 
+	 * @param a The attribute
+	 * @return The representative, which is the attribute itself if it hasn't
+	 *    been unioned with anything
+	 */
+	public Attribute find(Attribute a)
+	{
+		Attribute parent = parents.get(a);
+		
+		if (parent == null || parent.equals(a))
+		{
+			return a;
+		}
+		
+		Attribute root = find(parent);
+		parents.put(a, root);
+		
+		return root;
+	}
+	
+	/**
+	 * Records that two attributes are equal, merging their classes
+	 * 
+	 * @param a The first attribute
+	 * @param b The second attribute
+	 */
+	public void union(Attribute a, Attribute b)
+	{
+		if (!parents.containsKey(a)) parents.put(a, a);
+		if (!parents.containsKey(b)) parents.put(b, b);
+		
+		Attribute rootA = find(a);
+		Attribute rootB = find(b);
+		
+		if (!rootA.equals(rootB))
+		{
+			parents.put(rootB, rootA);
+		}
+	}
+	
+	/**
+	 * Checks if two attributes are known to be equal
+	 * 
+	 * @param a The first attribute
+	 * @param b The second attribute
+	 * @return True if they are in the same class
+	 */
+	public boolean equal(Attribute a, Attribute b)
+	{
+		return find(a).equals(find(b));
+	}
+	
+	/**
+	 * Returns every attribute in the same class as the given attribute
+	 * 
+	 * @param a The attribute
+	 * @return The members of its class, including itself
+	 */
+	public List<Attribute> getMembers(Attribute a)
+	{
+		List<Attribute> members = new ArrayList<Attribute>();
+		Attribute root          = find(a);
+		
+		for (Attribute b : parents.keySet())
+		{
+			if (find(b).equals(root))
+			{
+				members.add(b);
+			}
+		}
+		
+		if (members.isEmpty())
+		{
+			members.add(a);
+		}
+		
+		return members;
+	}
+	
+	/**
+	 * Returns every class with more than one member
+	 * 
+	 * @return The classes, each as a list of its members
+	 */
+	public Collection<List<Attribute>> getClasses()
+	{
+		LinkedHashMap<Attribute, List<Attribute>> classes =
+				new LinkedHashMap<Attribute, List<Attribute>>();
+		
+		for (Attribute a : parents.keySet())
+		{
+			Attribute root = find(a);
+			
+			if (!classes.containsKey(root))
+			{
+				classes.put(root, new ArrayList<Attribute>());
+			}
+			
+			classes.get(root).add(a);
+		}
+		
+		return classes.values();
+	}
+}
@@ -1,6 +1,11 @@
 package sjdb;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Estimates the cost of the given query plan
@@ -21,32 +26,189 @@ import java.util.Iterator;
  *     equals B (where B is either an attribute or a string value)
  *   + min(x, y) and max(x, y) are minimum and maximum
  * 
+ * As well as the output relation, each visit sets the total cost of the
+ * Operator: the local cost given by the CostModel, plus the total cost of
+ * its inputs. Costs therefore accumulate bottom-up through the plan.
+ * 
  * @see Operator.accept()
+ * @see CostModel
  * @author Emily Shepherd
  *
  */
 public class Estimator implements PlanVisitor
 {
+	/**
+	 * The most inputs a MultiwayJoin can have for its AGM bound to be
+	 * searched for exhaustively (see agmBound())
+	 */
+	private static final int AGM_LIMIT = 10;
+	
+	/**
+	 * The model used to give the local cost of each Operator
+	 */
+	private CostModel costModel;
+	
+	/**
+	 * Constructor
+	 * 
+	 * Uses the DefaultCostModel
+	 */
+	public Estimator()
+	{
+		this(new DefaultCostModel());
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param costModel The model used to give the local cost of each Operator
+	 */
+	public Estimator(CostModel costModel)
+	{
+		this.costModel = costModel;
+	}
+	
+	/**
+	 * @return The CostModel used by this Estimator
+	 */
+	public CostModel getCostModel()
+	{
+		return costModel;
+	}
+	
 	/**
 	 * Assesses the cost of a scan operation
 	 * 
 	 * For input, R, and output, O:
 	 *   T(O) = T(R)
+	 * For input, R, applying attr=val predicates (A1..An and C1..Cn) itself:
+	 *   T(O) = T(R)/(V(R, A1) * ... * V(R, An))
+	 *   V(O, Ai) = 1
 	 * 
 	 * @param op The Scan Operator to be assessed
 	 */
 	@Override
 	public void visit(Scan op)
 	{
-		Relation R               = new Relation(op.getRelation().getTupleCount());
-		Iterator<Attribute> iter = op.getRelation().getAttributes().iterator();
+		Relation rel               = op.getRelation();
+		List<Predicate> predicates = op.getPredicates();
+		int count                  = rel.getTupleCount();
+		ArrayList<Attribute> fixed = new ArrayList<Attribute>();
+		
+		for (Predicate p : predicates)
+		{
+			// A second attr=value on the same attribute selects nothing more
+			if (fixed.contains(p.getLeftAttribute())) continue;
+			
+			count /= Math.max(rel.getAttribute(p.getLeftAttribute()).getValueCount(), 1);
+			fixed.add(p.getLeftAttribute());
+		}
+		
+		Relation R               = new Relation(count);
+		Iterator<Attribute> iter = rel.getAttributes().iterator();
 		
 		while (iter.hasNext())
 		{
-			R.addAttribute(new Attribute(iter.next()));
+			Attribute a = iter.next();
+			
+			if (fixed.contains(a))
+			{
+				R.addAttribute(new Attribute(a, 1));
+			}
+			else
+			{
+				R.addAttribute(new Attribute(a));
+			}
 		}
 		
 		op.setOutput(R);
+		op.setCost(costModel.cost(op));
+	}
+
+	/**
+	 * Assesses the cost of an index scan operation
+	 * 
+	 * For input, R, looking up attr=val (A and C), with output, O:
+	 *   T(O) = T(R)/V(R, A)
+	 * For input, R, read whole in index order:
+	 *   T(O) = T(R)
+	 * 
+	 * @param op The IndexScan Operator to be assessed
+	 */
+	@Override
+	public void visit(IndexScan op)
+	{
+		Relation R  = op.getRelation();
+		Attribute A = null;
+		int V       = 1;
+		
+		if (op.getPredicate() != null)
+		{
+			A = op.getPredicate().getLeftAttribute();
+			V = Math.max(R.getAttribute(A).getValueCount(), 1);
+		}
+		
+		Relation O  = new Relation(R.getTupleCount() / V);
+		
+		for (Attribute a : R.getAttributes())
+		{
+			if (a.equals(A))
+			{
+				O.addAttribute(new Attribute(a, 1));
+			}
+			else
+			{
+				O.addAttribute(new Attribute(a));
+			}
+		}
+		
+		op.setOutput(O);
+		op.setCost(costModel.cost(op));
+	}
+	
+	/**
+	 * Assesses the cost of a bitmap scan operation
+	 * 
+	 * For input, R, ANDing the bitmaps of attr=val predicates (A1..An and
+	 * C1..Cn), with output, O:
+	 *   T(O) = T(R)/(V(R, A1) * ... * V(R, An))
+	 * where an attribute with more than one predicate is only counted once
+	 *   V(O, Ai) = 1
+	 * 
+	 * @param op The BitmapScan Operator to be assessed
+	 */
+	@Override
+	public void visit(BitmapScan op)
+	{
+		Relation R                 = op.getRelation();
+		int count                  = R.getTupleCount();
+		ArrayList<Attribute> fixed = new ArrayList<Attribute>();
+		
+		for (Predicate p : op.getPredicates())
+		{
+			// A second attr=value on the same attribute selects nothing more
+			if (fixed.contains(p.getLeftAttribute())) continue;
+			
+			count /= Math.max(R.getAttribute(p.getLeftAttribute()).getValueCount(), 1);
+			fixed.add(p.getLeftAttribute());
+		}
+		
+		Relation O = new Relation(count);
+		
+		for (Attribute a : R.getAttributes())
+		{
+			if (fixed.contains(a))
+			{
+				O.addAttribute(new Attribute(a, 1));
+			}
+			else
+			{
+				O.addAttribute(new Attribute(a));
+			}
+		}
+		
+		op.setOutput(O);
+		op.setCost(costModel.cost(op));
 	}
 
 	/**
@@ -77,11 +239,41 @@ public class Estimator implements PlanVisitor
 			// If you try Projecting an attribute that doesn't exist
 			catch (Exception e)
 			{
-				rel.addAttribute(new Attribute(a.getName(), 0));
+				// Except a row ID, which a scan produces alongside each of
+				// its tuples, so has as many values as it has tuples
+				if (a.equals(getRowId(op.getInput())))
+				{
+					rel.addAttribute(new Attribute(a, R.getTupleCount()));
+				}
+				else
+				{
+					rel.addAttribute(new Attribute(a, 0));
+				}
 			}
 		}
 		
 		op.setOutput(rel);
+		op.setCost(op.getInput().getCost() + costModel.cost(op));
+	}
+	
+	/**
+	 * Finds the row ID an Operator can produce (see Fetch)
+	 * 
+	 * @param op The Operator
+	 * @return The row ID of the named relation op scans, or null if op
+	 *    isn't a Scan, IndexScan or BitmapScan of one
+	 */
+	private static Attribute getRowId(Operator op)
+	{
+		Relation rel = null;
+		
+		if (op instanceof Scan)       rel = ((Scan)op).getRelation();
+		if (op instanceof IndexScan)  rel = ((IndexScan)op).getRelation();
+		if (op instanceof BitmapScan) rel = ((BitmapScan)op).getRelation();
+		
+		if (!(rel instanceof NamedRelation)) return null;
+		
+		return Fetch.getRowId((NamedRelation)rel);
 	}
 
 	/**
@@ -124,6 +316,7 @@ public class Estimator implements PlanVisitor
 			LeftCount = 0;
 			
 			op.setOutput(new Relation(0));
+			op.setCost(op.getInput().getCost() + costModel.cost(op));
 			return;
 		}
 		
@@ -145,7 +338,7 @@ public class Estimator implements PlanVisitor
 		{
 			if (a.equals(Left) || a.equals(Right))
 			{
-				rel.addAttribute(new Attribute(a.getName(), V));
+				rel.addAttribute(new Attribute(a, V));
 			}
 			else
 			{
@@ -154,6 +347,7 @@ public class Estimator implements PlanVisitor
 		}
 		
 		op.setOutput(rel);
+		op.setCost(op.getInput().getCost() + costModel.cost(op));
 	}
 
 	/**
@@ -169,7 +363,7 @@ public class Estimator implements PlanVisitor
 	{
 		Relation Left  = op.getLeft().getOutput();
 		Relation Right = op.getRight().getOutput();
-		Relation R     = new Relation(Left.getTupleCount() * Right.getTupleCount());
+		Relation R     = new Relation(clamp((long)Left.getTupleCount() * Right.getTupleCount()));
 		
 		for (Attribute a : Left.getAttributes())
 		{
@@ -181,6 +375,7 @@ public class Estimator implements PlanVisitor
 		}
 		
 		op.setOutput(R);
+		op.setCost(op.getLeft().getCost() + op.getRight().getCost() + costModel.cost(op));
 	}
 
 	/**
@@ -189,6 +384,8 @@ public class Estimator implements PlanVisitor
 	 * For inputs, R and S, joining on attributes, A and B, with output, O:
 	 * 	 T(O) = T(R).T(S)/max(V(R, A), V(S, B))
 	 * 
+	 * The cost depends on the physical algorithm set on the Join, if any.
+	 * 
 	 * @param op The Select Operator to be assessed
 	 */
 	@Override
@@ -198,6 +395,17 @@ public class Estimator implements PlanVisitor
 		Relation Right = op.getRight().getOutput();
 
 		op.setOutput(estimateJoin(Left, Right, op.getPredicate()));
+		
+		// An index nested loop join probes the right relation's index directly,
+		// so the right input is never scanned and its cost isn't paid
+		if (op.getAlgorithm() == Join.Algorithm.INDEX_NESTED_LOOP)
+		{
+			op.setCost(op.getLeft().getCost() + costModel.cost(op));
+		}
+		else
+		{
+			op.setCost(op.getLeft().getCost() + op.getRight().getCost() + costModel.cost(op));
+		}
 	}
 	
 	/**
@@ -212,13 +420,13 @@ public class Estimator implements PlanVisitor
 	{
 		int LeftCount  = Left.getAttribute(p.getLeftAttribute()).getValueCount();
 		int RightCount = Right.getAttribute(p.getRightAttribute()).getValueCount();
-		Relation R     = new Relation(Left.getTupleCount() * Right.getTupleCount() / Math.max(LeftCount, RightCount));
+		Relation R     = new Relation(clamp((long)Left.getTupleCount() * Right.getTupleCount() / Math.max(Math.max(LeftCount, RightCount), 1)));
 		
 		for (Attribute a : Left.getAttributes())
 		{
 			if (a.equals(p.getLeftAttribute()))
 			{
-				R.addAttribute(new Attribute(a.getName(), Math.min(LeftCount, RightCount)));
+				R.addAttribute(new Attribute(a, Math.min(LeftCount, RightCount)));
 			}
 			else
 			{
@@ -229,7 +437,7 @@ public class Estimator implements PlanVisitor
 		{
 			if (a.equals(p.getLeftAttribute()))
 			{
-				R.addAttribute(new Attribute(a.getName(), Math.min(LeftCount, RightCount)));
+				R.addAttribute(new Attribute(a, Math.min(LeftCount, RightCount)));
 			}
 			else
 			{
@@ -240,4 +448,428 @@ public class Estimator implements PlanVisitor
 		return R;
 	}
 
+	/**
+	 * Assesses the cost of an aggregate operation
+	 * 
+	 * For input, R, grouping on attributes, G1..Gn, with output, O:
+	 *   T(O) = min(T(R), V(R, G1) * ... * V(R, Gn))
+	 *   T(O) = 1, with no grouping attributes
+	 * 
+	 * Each grouping attribute keeps its value count. Each aggregation has a
+	 * value per group, except that MIN and MAX can't have more values than
+	 * the attribute they aggregate.
+	 * 
+	 * @param op The Aggregate Operator to be assessed
+	 */
+	@Override
+	public void visit(Aggregate op)
+	{
+		Relation R  = op.getInput().getOutput();
+		long groups = 1;
+		
+		for (Attribute a : op.getGroupBy())
+		{
+			try
+			{
+				groups = Math.min(groups * Math.max(R.getAttribute(a).getValueCount(), 1), R.getTupleCount());
+			}
+			catch (Exception e)
+			{
+				// Grouping on an attribute that doesn't exist
+			}
+		}
+		
+		Relation O = new Relation(clamp(R.getTupleCount() == 0 ? 0 : groups));
+		
+		for (Attribute a : op.getGroupBy())
+		{
+			try
+			{
+				O.addAttribute(new Attribute(R.getAttribute(a)));
+			}
+			catch (Exception e)
+			{
+				O.addAttribute(new Attribute(a, 0));
+			}
+		}
+		
+		for (Aggregation agg : op.getAggregations())
+		{
+			int values    = O.getTupleCount();
+			int width     = Attribute.DEFAULT_WIDTH;
+			boolean fixed = true;
+			
+			try
+			{
+				if (agg.getAttribute() != null
+						&& (agg.getFunction() == Aggregation.Function.MIN || agg.getFunction() == Aggregation.Function.MAX))
+				{
+					Attribute input = R.getAttribute(agg.getAttribute());
+					values          = input.getValueCount();
+					width           = input.getWidth();
+					fixed           = input.isFixedWidth();
+				}
+			}
+			catch (Exception e)
+			{
+				// Aggregating an attribute that doesn't exist
+			}
+			
+			// Counts and sums are numbers, but the minimum or maximum of a
+			// string is still a string
+			O.addAttribute(fixed ? new Attribute(agg.getName(), values, width) : new Attribute(agg.getName(), values));
+		}
+		
+		op.setOutput(O);
+		op.setCost(op.getInput().getCost() + costModel.cost(op));
+	}
+	
+	/**
+	 * Assesses the cost of a semi-join operation
+	 * 
+	 * For inputs, R and S, joining on attributes, A and B, with output, O,
+	 * assuming the smaller set of values is contained in the larger:
+	 *   T(O) = T(R) * min(1, V(S, B) / V(R, A))
+	 *   V(O, A) = min(V(R, A), V(S, B))
+	 * 
+	 * The right input is shared with another part of the plan, which pays
+	 * for computing it, so only the left input's cost is carried forward.
+	 * The cost of materialising the right input for this use of it is
+	 * part of the semi-join's own (see CostModel).
+	 * 
+	 * @param op The SemiJoin Operator to be assessed
+	 */
+	@Override
+	public void visit(SemiJoin op)
+	{
+		Relation R  = op.getLeft().getOutput();
+		Relation S  = op.getRight().getOutput();
+		Predicate p = op.getPredicate();
+		int VA      = 0;
+		int VB      = 0;
+		
+		try
+		{
+			VA = R.getAttribute(p.getLeftAttribute()).getValueCount();
+			VB = S.getAttribute(p.getRightAttribute()).getValueCount();
+		}
+		catch (Exception e)
+		{
+			// Joining on an attribute that doesn't exist matches nothing
+		}
+		
+		long count = (long)R.getTupleCount() * Math.min(VA, VB) / Math.max(VA, 1);
+		Relation O = new Relation(clamp(count));
+		
+		for (Attribute a : R.getAttributes())
+		{
+			if (a.equals(p.getLeftAttribute()))
+			{
+				O.addAttribute(new Attribute(a, Math.min(VA, VB)));
+			}
+			else
+			{
+				O.addAttribute(new Attribute(a));
+			}
+		}
+		
+		op.setOutput(O);
+		op.setCost(op.getLeft().getCost() + costModel.cost(op));
+	}
+	
+	/**
+	 * Assesses the cost of a multi-way join operation
+	 * 
+	 * The join attributes are grouped into classes known to be equal. For
+	 * inputs, R1..Rn, and a class whose members have value counts V1..Vk,
+	 * assuming the smallest set of values is contained in the others, only
+	 * min(V1..Vk) values can match in all of them:
+	 *   T(O) = T(R1) * ... * T(Rn) / product over classes of
+	 *          (V1 * ... * Vk / min(V1..Vk))
+	 *   V(O, Aj) = min(V1..Vk), for each member Aj of a class
+	 * 
+	 * The join's AGM bound is set too (see agmBound()).
+	 * 
+	 * @param op The MultiwayJoin Operator to be assessed
+	 */
+	@Override
+	public void visit(MultiwayJoin op)
+	{
+		List<Operator> inputs               = op.getInputs();
+		EquivalenceClasses classes          = new EquivalenceClasses();
+		HashSet<Attribute> joined           = new HashSet<Attribute>();
+		HashMap<Attribute, Integer> mins    = new HashMap<Attribute, Integer>();
+		ArrayList<HashSet<Attribute>> edges = new ArrayList<HashSet<Attribute>>();
+		double count                        = 1;
+		double cost                         = 0;
+		
+		for (Predicate p : op.getPredicates())
+		{
+			classes.union(p.getLeftAttribute(), p.getRightAttribute());
+			joined.add(p.getLeftAttribute());
+			joined.add(p.getRightAttribute());
+		}
+		
+		for (Operator input : inputs)
+		{
+			Relation R              = input.getOutput();
+			HashSet<Attribute> edge = new HashSet<Attribute>();
+			count                  *= R.getTupleCount();
+			cost                   += input.getCost();
+			
+			for (Attribute a : R.getAttributes())
+			{
+				if (!joined.contains(a)) continue;
+				
+				Attribute root = classes.find(a);
+				
+				// Divide by every value count, then multiply back by the
+				// smallest of each class once all are known
+				count /= Math.max(a.getValueCount(), 1);
+				edge.add(root);
+				
+				Integer min = mins.get(root);
+				if (min == null || a.getValueCount() < min) mins.put(root, a.getValueCount());
+			}
+			
+			edges.add(edge);
+		}
+		
+		for (int min : mins.values())
+		{
+			count *= Math.max(min, 1);
+		}
+		
+		Relation O = new Relation(clamp((long)Math.min(count, Long.MAX_VALUE)));
+		
+		for (Operator input : inputs)
+		{
+			for (Attribute a : input.getOutput().getAttributes())
+			{
+				if (joined.contains(a))
+				{
+					O.addAttribute(new Attribute(a, mins.get(classes.find(a))));
+				}
+				else
+				{
+					O.addAttribute(new Attribute(a));
+				}
+			}
+		}
+		
+		op.setOutput(O);
+		op.setBound(agmBound(inputs, edges));
+		op.setCost(cost + costModel.cost(op));
+	}
+	
+	/**
+	 * Finds the AGM bound of a multi-way join: the most combinations of
+	 * join attribute values its inputs could possibly produce
+	 * 
+	 * Treating each class of join attributes as a vertex, and each input,
+	 * R1..Rn, as an edge over the classes it holds, the bound is the
+	 * smallest:
+	 *   T(R1)^w1 * ... * T(Rn)^wn
+	 * over all weights, w1..wn, where the weights of the inputs holding each
+	 * class add up to at least one (a fractional edge cover).
+	 * 
+	 * For a join graph, the best such weights are all 0, 1/2 or 1, so up to
+	 * AGM_LIMIT inputs those are searched exhaustively. Beyond that, every
+	 * weight is taken as 1, which is always a cover, if a loose one.
+	 * 
+	 * @param inputs The join's inputs
+	 * @param edges The classes each input holds
+	 * @return The AGM bound
+	 */
+	private long agmBound(List<Operator> inputs, List<HashSet<Attribute>> edges)
+	{
+		int n         = inputs.size();
+		double[] logs = new double[n];
+		double best   = 0;
+		
+		for (int i = 0; i < n; i++)
+		{
+			logs[i] = Math.log(Math.max(inputs.get(i).getOutput().getTupleCount(), 1));
+			best   += logs[i];
+		}
+		
+		if (n <= AGM_LIMIT)
+		{
+			HashSet<Attribute> vertices = new HashSet<Attribute>();
+			int[] weights               = new int[n];
+			
+			for (HashSet<Attribute> edge : edges)
+			{
+				vertices.addAll(edge);
+			}
+			
+			// Weights are counted in halves, from 0 to 2, like the digits
+			// of a base 3 number
+			for (int combo = 0; combo < Math.pow(3, n); combo++)
+			{
+				double log = 0;
+				
+				for (int i = 0, c = combo; i < n; i++, c /= 3)
+				{
+					weights[i] = c % 3;
+					log       += weights[i] * logs[i] / 2;
+				}
+				
+				if (log >= best || !isCover(vertices, edges, weights)) continue;
+				
+				best = log;
+			}
+		}
+		
+		return (long)Math.min(Math.exp(best), Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Checks if some weights are a fractional edge cover
+	 * 
+	 * @param vertices The classes to be covered
+	 * @param edges The classes each input holds
+	 * @param weights The weight of each input, in halves
+	 * @return True if each class is held by inputs weighing at least one
+	 */
+	private static boolean isCover(Set<Attribute> vertices, List<HashSet<Attribute>> edges, int[] weights)
+	{
+		for (Attribute v : vertices)
+		{
+			int total = 0;
+			
+			for (int i = 0; i < weights.length; i++)
+			{
+				if (edges.get(i).contains(v)) total += weights[i];
+			}
+			
+			if (total < 2) return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Assesses the cost of a runtime filter
+	 * 
+	 * For input, R, filtered on attribute, A, by the values of attribute, B,
+	 * of its source, S, with a false positive rate, f, and output, O:
+	 *   m = min(1, V(S, B) / V(R, A))
+	 *   T(O) = T(R) * (m + f * (1 - m))
+	 *   V(O, A) = V(R, A) * (m + f * (1 - m))
+	 * 
+	 * @param op The RuntimeFilter Operator to be assessed
+	 */
+	@Override
+	public void visit(RuntimeFilter op)
+	{
+		Relation R  = op.getInput().getOutput();
+		Relation S  = op.getSource().getOutput();
+		Predicate p = op.getPredicate();
+		int VA      = 0;
+		int VB      = 0;
+		
+		try
+		{
+			VA = R.getAttribute(p.getLeftAttribute()).getValueCount();
+			VB = S.getAttribute(p.getRightAttribute()).getValueCount();
+		}
+		catch (Exception e)
+		{
+			// Filtering on an attribute that doesn't exist lets nothing by
+		}
+		
+		double m    = Math.min(1, (double)VB / Math.max(VA, 1));
+		double pass = m + op.getFalsePositiveRate() * (1 - m);
+		Relation O  = new Relation(clamp((long)Math.ceil(R.getTupleCount() * pass)));
+		
+		for (Attribute a : R.getAttributes())
+		{
+			if (a.equals(p.getLeftAttribute()))
+			{
+				O.addAttribute(new Attribute(a, (int)Math.ceil(VA * pass)));
+			}
+			else
+			{
+				O.addAttribute(new Attribute(a));
+			}
+		}
+		
+		op.setOutput(O);
+		op.setCost(op.getInput().getCost() + costModel.cost(op));
+	}
+	
+	/**
+	 * Assesses the cost of a sort operation
+	 * 
+	 * Sorting doesn't change the relation, so for input, R, and output, O:
+	 *   T(O) = T(R)
+	 *   V(O, A) = V(R, A)
+	 * 
+	 * @param op The Sort Operator to be assessed
+	 */
+	@Override
+	public void visit(Sort op)
+	{
+		Relation R = op.getInput().getOutput();
+		Relation O = new Relation(R.getTupleCount());
+		
+		for (Attribute a : R.getAttributes())
+		{
+			O.addAttribute(new Attribute(a));
+		}
+		
+		op.setOutput(O);
+		op.setCost(op.getInput().getCost() + costModel.cost(op));
+	}
+	
+	/**
+	 * Assesses the cost of a fetch operation
+	 * 
+	 * Fetching attributes (A1..An) from named relation, S, by the row IDs
+	 * of input, R, with output, O, keeps every tuple but replaces the row
+	 * IDs with the attributes:
+	 *   T(O) = T(R)
+	 *   V(O, Ai) = min(V(S, Ai), T(R))
+	 * 
+	 * @param op The Fetch Operator to be assessed
+	 */
+	@Override
+	public void visit(Fetch op)
+	{
+		Relation R   = op.getInput().getOutput();
+		Relation S   = op.getRelation();
+		Relation O   = new Relation(R.getTupleCount());
+		Attribute id = Fetch.getRowId(op.getRelation());
+		
+		for (Attribute a : R.getAttributes())
+		{
+			if (!a.equals(id)) O.addAttribute(new Attribute(a));
+		}
+		
+		for (Attribute a : op.getAttributes())
+		{
+			Attribute stored = S.getAttribute(a);
+			
+			O.addAttribute(new Attribute(stored, Math.min(stored.getValueCount(), R.getTupleCount())));
+		}
+		
+		op.setOutput(O);
+		op.setCost(op.getInput().getCost() + costModel.cost(op));
+	}
+	
+	/**
+	 * Limits a tuple count to the largest a Relation can hold
+	 * 
+	 * Products and joins of large relations can easily overflow an int, which
+	 * would otherwise wrap round to a tiny (or negative) estimate
+	 * 
+	 * @param count The tuple count
+	 * @return The count, or Integer.MAX_VALUE if it is larger
+	 */
+	private static int clamp(long count)
+	{
+		return (int)Math.min(count, Integer.MAX_VALUE);
+	}
+
 }
@@ -0,0 +1,78 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This class represents a late materialisation operator, which fetches
+ * attributes of a named relation that were left behind when it was
+ * scanned. Its input carries the row ID of each tuple of the relation in
+ * their place, and the attributes are read from the tuple each row ID
+ * points to, so only the tuples that survive every operator beneath are
+ * ever materialised in full.
+ * @author Emily Shepherd
+ */
+public class Fetch extends UnaryOperator {
+	/**
+	 * The width, in bytes, of a row ID
+	 */
+	public static final int ROW_ID_WIDTH = 8;
+	
+	private NamedRelation relation;
+	private List<Attribute> attributes;
+	
+	/**
+	 * Create a new fetch operator.
+	 * @param input Child operator, carrying the row IDs of the relation
+	 * @param relation Named relation the attributes are fetched from
+	 * @param attributes Attributes to be fetched
+	 */
+	public Fetch(Operator input, NamedRelation relation, List<Attribute> attributes) {
+		super(input);
+		this.relation = relation;
+		this.attributes = new ArrayList<Attribute>(attributes);
+	}
+	
+	/**
+	 * Return the row ID attribute of a named relation: a pseudo-attribute
+	 * naming the position of each tuple, which a Project above a Scan of
+	 * the relation may keep in place of the attributes to be fetched
+	 * @param relation Named relation
+	 * @return Row ID attribute
+	 */
+	public static Attribute getRowId(NamedRelation relation) {
+		return new Attribute("#" + relation.toString(), relation.getTupleCount(), ROW_ID_WIDTH);
+	}
+	
+	public NamedRelation getRelation() {
+		return this.relation;
+	}
+	
+	public List<Attribute> getAttributes() {
+		return this.attributes;
+	}
+	
+	/* (non-Javadoc)
+	 * @see sjdb.UnaryOperator#accept(sjdb.OperatorVisitor)
+	 */
+	public void accept(PlanVisitor visitor) {
+		super.accept(visitor);
+		visitor.visit(this);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		String ret = "FETCH [";
+		Iterator<Attribute> iter = this.attributes.iterator();
+		while (iter.hasNext()) {
+			ret += iter.next().toString();
+			if (iter.hasNext()) {
+				ret += ",";
+			}
+		}
+		return ret + "] FROM " + this.relation.toString() + " (" + getInput().toString() + ")";
+	}
+}
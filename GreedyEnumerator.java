@@ -0,0 +1,94 @@
+package sjdb;
+
+import java.util.BitSet;
+
+/**
+ * Finds a join tree for a JoinGraph by Greedy Operator Ordering
+ * 
+ * Each relation starts off as a sub-plan on its own. Each round, every pair
+ * of sub-plans with a predicate between them is costed, and the cheapest
+ * pair is joined, until one sub-plan is left. This works from a JoinGraph,
+ * so doesn't disturb the Optimiser's bookkeeping.
+ * 
+ * This takes O(n.p) joins for n relations and p predicates, and is never
+ * cancelled, so always gives a complete plan quickly.
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class GreedyEnumerator
+{
+	/**
+	 * The graph to enumerate
+	 */
+	private JoinGraph graph;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param graph The graph to enumerate
+	 */
+	public GreedyEnumerator(JoinGraph graph)
+	{
+		this.graph = graph;
+	}
+	
+	/**
+	 * Joins every relation in the graph
+	 * 
+	 * @return The plan
+	 */
+	public PlanCandidate enumerate()
+	{
+		int n                 = graph.size();
+		PlanCandidate[] trees = new PlanCandidate[n];
+		BitSet[] sets         = new BitSet[n];
+		int[] owners          = new int[n];
+		
+		for (int i = 0; i < n; i++)
+		{
+			trees[i]  = graph.getRelation(i).get(0);
+			sets[i]   = new BitSet(n);
+			sets[i].set(i);
+			owners[i] = i;
+		}
+		
+		for (int round = 1; round < n; round++)
+		{
+			PlanCandidate cheapest = null;
+			int left               = 0;
+			int right              = 0;
+			
+			for (int k = 0; k < graph.getPredicateCount(); k++)
+			{
+				int a = owners[graph.getLeft(k)];
+				int b = owners[graph.getRight(k)];
+				
+				if (a == b) continue;
+				
+				PlanCandidate joined = graph.join(trees[a], sets[a], trees[b], sets[b]);
+				
+				if (cheapest == null || joined.getCost() < cheapest.getCost())
+				{
+					cheapest = joined;
+					left     = a;
+					right    = b;
+				}
+			}
+			
+			// Happens if the graph isn't connected, which a component never is
+			if (cheapest == null) break;
+			
+			trees[left]  = cheapest;
+			trees[right] = null;
+			sets[left].or(sets[right]);
+			
+			for (int i = sets[right].nextSetBit(0); i >= 0; i = sets[right].nextSetBit(i + 1))
+			{
+				owners[i] = left;
+			}
+		}
+		
+		return trees[owners[0]];
+	}
+}
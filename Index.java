@@ -0,0 +1,154 @@
+package sjdb;
+
+/**
+ * This class represents an index declared in the system catalogue on a
+ * single attribute of a named relation.
+ * 
+ * @author Emily Shepherd
+ */
+public class Index
+{
+	/**
+	 * The kinds of index that may be declared
+	 */
+	public enum Type
+	{
+		/**
+		 * Supports point lookups only
+		 */
+		HASH,
+		
+		/**
+		 * Supports point lookups, and returns tuples in key order
+		 */
+		BTREE,
+		
+		/**
+		 * Holds a compressed bitmap of the matching row IDs for each value,
+		 * so lookups of several attributes can be ANDed together before any
+		 * tuple is read. Only worth declaring on attributes with few values.
+		 */
+		BITMAP
+	}
+	
+	/**
+	 * The number of keys held in a single B-tree node
+	 */
+	public static final int BTREE_FANOUT = 200;
+	
+	private NamedRelation relation;
+	private Attribute attribute;
+	private Type type;
+	
+	/**
+	 * When true, the relation is stored in the order of this index
+	 */
+	private boolean clustered;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param relation The indexed relation
+	 * @param attribute The indexed attribute
+	 * @param type The kind of index
+	 * @param clustered True if the relation is stored in index order
+	 */
+	public Index(NamedRelation relation, Attribute attribute, Type type, boolean clustered)
+	{
+		this.relation  = relation;
+		this.attribute = attribute;
+		this.type      = type;
+		this.clustered = clustered;
+	}
+	
+	/**
+	 * @return The indexed relation
+	 */
+	public NamedRelation getRelation()
+	{
+		return relation;
+	}
+	
+	/**
+	 * @return The indexed attribute
+	 */
+	public Attribute getAttribute()
+	{
+		return attribute;
+	}
+	
+	/**
+	 * @return The kind of index
+	 */
+	public Type getType()
+	{
+		return type;
+	}
+	
+	/**
+	 * @return True if the relation is stored in the order of this index
+	 */
+	public boolean isClustered()
+	{
+		return clustered;
+	}
+	
+	/**
+	 * Returns the number of index pages read to find a single key
+	 * 
+	 * Hash indexes need a single bucket page. B-trees need one page per
+	 * level, with BTREE_FANOUT keys in each node.
+	 * 
+	 * Bitmaps are compressed Roaring-style: the row IDs are split into
+	 * chunks of 2^16, and the matches in each chunk are held either as a
+	 * sorted array of 2 byte offsets, or as an 8KB bitmap once that is
+	 * smaller. For T tuples and V values, the T/V matches of a value take:
+	 *   min(2.T/V, T/8)
+	 * bytes.
+	 * 
+	 * @return The number of pages read per lookup
+	 */
+	public int getLookupPages()
+	{
+		if (type == Type.HASH)
+		{
+			return 1;
+		}
+		
+		if (type == Type.BITMAP)
+		{
+			double T     = relation.getTupleCount();
+			double bytes = Math.min(2 * T / Math.max(attribute.getValueCount(), 1), T / 8);
+			
+			return (int)Math.max(1, Math.ceil(bytes / Relation.PAGE_SIZE));
+		}
+		
+		int keys   = Math.max(attribute.getValueCount(), 1);
+		int height = 1;
+		
+		while (keys > BTREE_FANOUT)
+		{
+			keys = (keys + BTREE_FANOUT - 1) / BTREE_FANOUT;
+			height++;
+		}
+		
+		return height;
+	}
+	
+	/**
+	 * Renders this index in the syntax used in the system catalogue
+	 * 
+	 * @return The rendering of this index
+	 */
+	public String render()
+	{
+		return "@index:" + relation + ":" + attribute.getName() + ":"
+				+ type.toString().toLowerCase() + (clustered ? ":clustered" : "");
+	}
+	
+	@Override
+	public String toString()
+	{
+		return render();
+	}
+}
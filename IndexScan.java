@@ -0,0 +1,120 @@
+package sjdb;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This class implements an IndexScan operator, which feeds the tuples of a
+ * NamedRelation matching an attr=value predicate into a query plan, by
+ * looking them up in an index rather than reading the whole relation.
+ * 
+ * An IndexScan with no predicate reads the whole relation in the order of
+ * a B-tree index, so that its output is ordered on the indexed attribute.
+ * 
+ * @author Emily Shepherd
+ */
+public class IndexScan extends Operator
+{
+	/**
+	 * The named relation to be read
+	 */
+	private NamedRelation relation;
+	
+	/**
+	 * The index to look the value up in
+	 */
+	private Index index;
+	
+	/**
+	 * The attr=value predicate to look up, or null to read the
+	 * whole relation in index order
+	 */
+	private Predicate predicate;
+	
+	/**
+	 * Create a new index scan reading the whole of a given named relation
+	 * in the order of a B-tree index
+	 * 
+	 * @param relation Named relation to be read
+	 * @param index B-tree index giving the order
+	 */
+	public IndexScan(NamedRelation relation, Index index)
+	{
+		this(relation, index, null);
+	}
+	
+	/**
+	 * Create a new index scan of a given named relation
+	 * 
+	 * @param relation Named relation to be read
+	 * @param index Index on the predicate's attribute
+	 * @param predicate The attr=value predicate to look up
+	 */
+	public IndexScan(NamedRelation relation, Index index, Predicate predicate)
+	{
+		this.relation  = relation;
+		this.index     = index;
+		this.predicate = predicate;
+		this.output    = new Relation(relation.getTupleCount());
+		Iterator<Attribute> iter = relation.getAttributes().iterator();
+		
+		while (iter.hasNext())
+		{
+			this.output.addAttribute(new Attribute(iter.next()));
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see sjdb.Operator#getInputs()
+	 */
+	@Override
+	public List<Operator> getInputs()
+	{
+		return null;
+	}
+	
+	/**
+	 * @return Named relation to be read
+	 */
+	public Relation getRelation()
+	{
+		return relation;
+	}
+	
+	/**
+	 * @return The index the value is looked up in
+	 */
+	public Index getIndex()
+	{
+		return index;
+	}
+	
+	/**
+	 * @return The attr=value predicate looked up, or null if the whole
+	 *    relation is read in index order
+	 */
+	public Predicate getPredicate()
+	{
+		return predicate;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		String key = predicate == null ? index.getAttribute().getName() : predicate.toString();
+		
+		return "INDEX SCAN [" + key + "] (" + relation.toString() + ")";
+	}
+	
+	/* (non-Javadoc)
+	 * @see sjdb.Operator#accept(sjdb.OperatorVisitor)
+	 */
+	@Override
+	public void accept(PlanVisitor visitor)
+	{
+		visitor.visit(this);
+	}
+}
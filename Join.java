@@ -5,7 +5,38 @@ package sjdb;
  * @author nmg
  */
 public class Join extends BinaryOperator {
+	/**
+	 * The physical algorithms a join may be executed with. For hash joins
+	 * the left input is the build side; for nested loop joins the left
+	 * input is the outer.
+	 */
+	public enum Algorithm {
+		HASH("HASH"),
+		SORT_MERGE("SORT MERGE"),
+		INDEX_NESTED_LOOP("INDEX NESTED LOOP"),
+		BLOCK_NESTED_LOOP("BLOCK NESTED LOOP");
+		
+		private String label;
+		
+		private Algorithm(String label) {
+			this.label = label;
+		}
+		
+		public String toString() {
+			return this.label;
+		}
+	}
+	
 	private Predicate predicate;
+	/**
+	 * The physical algorithm, or null if this join is still logical
+	 */
+	private Algorithm algorithm;
+	/**
+	 * The index on the right input probed by an index nested loop join
+	 */
+	private Index index;
+	
 	/**
 	 * Create a new join operator.
 	 * @param left Left child operator
@@ -21,6 +52,53 @@ public class Join extends BinaryOperator {
 		return this.predicate;
 	}
 	
+	/**
+	 * Return the physical algorithm chosen for this join
+	 * @return Algorithm, or null if none has been chosen
+	 */
+	public Algorithm getAlgorithm() {
+		return this.algorithm;
+	}
+	
+	/**
+	 * Set the physical algorithm for this join
+	 * @param algorithm Algorithm
+	 */
+	public void setAlgorithm(Algorithm algorithm) {
+		this.algorithm = algorithm;
+		this.index = null;
+	}
+	
+	/**
+	 * Make this join an index nested loop join, probing the given index
+	 * on the right input
+	 * @param index Index on the right input's join attribute
+	 */
+	public void setAlgorithm(Index index) {
+		this.algorithm = Algorithm.INDEX_NESTED_LOOP;
+		this.index = index;
+	}
+	
+	/**
+	 * Return the index probed by an index nested loop join
+	 * @return Index, or null for any other algorithm
+	 */
+	public Index getIndex() {
+		return this.index;
+	}
+	
+	/**
+	 * Swap the left and right inputs of this join, along with the sides
+	 * of its predicate, so that the build / outer side changes. 
+	 */
+	public void swap() {
+		Operator left = this.inputs.get(0);
+		this.inputs.set(0, this.inputs.get(1));
+		this.inputs.set(1, left);
+		this.predicate = new Predicate(this.predicate.getRightAttribute(), 
+				this.predicate.getLeftAttribute());
+	}
+	
 	/* (non-Javadoc)
 	 * @see sjdb.BinaryOperator#accept(sjdb.OperatorVisitor)
 	 */
@@ -33,7 +111,8 @@ public class Join extends BinaryOperator {
 	 * @see java.lang.Object#toString()
 	 */
 	public String toString() {
-		return "(" + this.getLeft().toString() + ") JOIN [" + 
+		return "(" + this.getLeft().toString() + ") " + 
+				(this.algorithm == null ? "" : this.algorithm + " ") + "JOIN [" + 
 				this.getPredicate().toString() +
 				"] (" + this.getRight().toString() + ")";
 	}
@@ -0,0 +1,461 @@
+package sjdb;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Chooses a physical algorithm for every Join in a plan
+ * 
+ * This is run once join ordering is complete. As it is a PlanVisitor, the
+ * plan is walked depth-first, so by the time a Join is visited, both of its
+ * inputs have had their algorithms chosen and their costs re-estimated.
+ * 
+ * For each Join, every applicable algorithm is tried in both orientations
+ * (ie with either side as the build / outer input) and costed with the
+ * Estimator. The cheapest is kept, though given a MemoryBudget, any which
+ * keeps the plan beneath the Join within it beats any which doesn't:
+ *   + HASH and BLOCK_NESTED_LOOP are always applicable
+ *   + SORT_MERGE is always applicable, with any input not already ordered
+ *     on its join attribute sorted first (see Sort)
+ *   + INDEX_NESTED_LOOP is applicable when the inner input reads a
+ *     NamedRelation with an index on its join attribute
+ * 
+ * Aggregates are given an algorithm too, as whether they can be streamed
+ * depends on the order of their input.
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class JoinAlgorithmSelector implements PlanVisitor
+{
+	/**
+	 * The Estimator used to cost each candidate algorithm
+	 */
+	private Estimator estimator;
+	
+	/**
+	 * The attribute each visited Operator's output is ordered on
+	 * 
+	 * Operators with unordered output are not present
+	 */
+	private HashMap<Operator, Attribute> orders = new HashMap<Operator, Attribute>();
+	
+	/**
+	 * The build sides of hash joins which RuntimeFilters visited so far are
+	 * built from
+	 */
+	private Set<Operator> sources = Collections.newSetFromMap(new IdentityHashMap<Operator, Boolean>());
+	
+	/**
+	 * The MemoryBudget plans should keep within, or null if there is none
+	 */
+	private MemoryBudget budget;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param estimator The Estimator used to cost each candidate algorithm
+	 */
+	public JoinAlgorithmSelector(Estimator estimator)
+	{
+		this(estimator, null);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param estimator The Estimator used to cost each candidate algorithm
+	 * @param budget The MemoryBudget plans should keep within, or null
+	 */
+	public JoinAlgorithmSelector(Estimator estimator, MemoryBudget budget)
+	{
+		this.estimator = estimator;
+		this.budget    = budget;
+	}
+	
+	/**
+	 * Returns the attribute the given Operator's output is ordered on
+	 * 
+	 * @param op An Operator which has already been visited
+	 * @return The attribute, or null if the output is unordered
+	 */
+	public Attribute getOrder(Operator op)
+	{
+		return orders.get(op);
+	}
+	
+	/**
+	 * Scans are ordered if their relation has a clustered B-tree index
+	 */
+	@Override
+	public void visit(Scan op)
+	{
+		estimator.visit(op);
+		setOrder(op, ((NamedRelation)op.getRelation()).getSortOrder());
+	}
+
+	/**
+	 * Index scans reading the whole relation are ordered on their index.
+	 * Point lookups are unordered.
+	 */
+	@Override
+	public void visit(IndexScan op)
+	{
+		estimator.visit(op);
+		
+		if (op.getPredicate() == null)
+		{
+			setOrder(op, op.getIndex().getAttribute());
+		}
+	}
+	
+	/**
+	 * Bitmap scans read matches in the order they are stored
+	 */
+	@Override
+	public void visit(BitmapScan op)
+	{
+		estimator.visit(op);
+		setOrder(op, ((NamedRelation)op.getRelation()).getSortOrder());
+	}
+
+	/**
+	 * Projects keep the order of their input, if they keep its attribute
+	 */
+	@Override
+	public void visit(Project op)
+	{
+		estimator.visit(op);
+		
+		Attribute order = orders.get(op.getInput());
+		if (order != null && op.getAttributes().contains(order))
+		{
+			setOrder(op, order);
+		}
+	}
+
+	/**
+	 * Selects keep the order of their input
+	 */
+	@Override
+	public void visit(Select op)
+	{
+		estimator.visit(op);
+		setOrder(op, orders.get(op.getInput()));
+	}
+
+	/**
+	 * Products have unordered output
+	 */
+	@Override
+	public void visit(Product op)
+	{
+		estimator.visit(op);
+	}
+
+	/**
+	 * Aggregates are streamed if their input is already ordered on their
+	 * only grouping attribute, keeping that order. Otherwise they are
+	 * hashed, which leaves their output unordered.
+	 */
+	@Override
+	public void visit(Aggregate op)
+	{
+		Attribute order = orders.get(op.getInput());
+		
+		if (order != null && op.getGroupBy().size() == 1 && op.getGroupBy().contains(order))
+		{
+			op.setAlgorithm(Aggregate.Algorithm.STREAM);
+			setOrder(op, order);
+		}
+		else
+		{
+			op.setAlgorithm(Aggregate.Algorithm.HASH);
+		}
+		
+		estimator.visit(op);
+	}
+
+	/**
+	 * Semi-joins keep the order of their left input
+	 */
+	@Override
+	public void visit(SemiJoin op)
+	{
+		estimator.visit(op);
+		setOrder(op, orders.get(op.getLeft()));
+	}
+	
+	/**
+	 * Multi-way joins have only the one algorithm, and sort their inputs
+	 * themselves, so their output is left unordered
+	 */
+	@Override
+	public void visit(MultiwayJoin op)
+	{
+		estimator.visit(op);
+	}
+	
+	/**
+	 * Runtime filters keep the order of their input
+	 */
+	@Override
+	public void visit(RuntimeFilter op)
+	{
+		estimator.visit(op);
+		setOrder(op, orders.get(op.getInput()));
+		sources.add(op.getSource());
+	}
+	
+	/**
+	 * Fetches keep the order of their input
+	 */
+	@Override
+	public void visit(Fetch op)
+	{
+		estimator.visit(op);
+		setOrder(op, orders.get(op.getInput()));
+	}
+	
+	/**
+	 * Sorts are ordered on their attribute
+	 */
+	@Override
+	public void visit(Sort op)
+	{
+		estimator.visit(op);
+		setOrder(op, op.getAttribute());
+	}
+	
+	/**
+	 * Tries every applicable algorithm and orientation, keeping the cheapest
+	 * 
+	 * A Join whose build side a RuntimeFilter beneath it is built from is
+	 * left as a hash join, the same way round, as the filter relies on it.
+	 * 
+	 * Any Sorts added for a previous choice of SORT_MERGE are taken away
+	 * first, and added back only if SORT_MERGE still wins.
+	 */
+	@Override
+	public void visit(Join op)
+	{
+		if (op.getAlgorithm() == Join.Algorithm.HASH && sources.contains(op.getLeft()))
+		{
+			estimator.visit(op);
+			setOrder(op, orders.get(op.getRight()));
+			return;
+		}
+		
+		for (int i = 0; i < 2; i++)
+		{
+			if (op.getInputs().get(i) instanceof Sort)
+			{
+				op.setInput(i, ((Sort)op.getInputs().get(i)).getInput());
+			}
+		}
+		
+		Join.Algorithm bestAlgorithm = null;
+		Index bestIndex              = null;
+		boolean bestSwapped          = false;
+		boolean bestFits             = false;
+		double bestCost              = 0;
+		
+		for (int i = 0; i < 2; i++)
+		{
+			boolean swapped = i == 1;
+			if (swapped) op.swap();
+			
+			for (Join.Algorithm algorithm : Join.Algorithm.values())
+			{
+				Index index = null;
+				
+				if (algorithm == Join.Algorithm.INDEX_NESTED_LOOP)
+				{
+					index = getInnerIndex(op);
+					if (index == null) continue;
+					op.setAlgorithm(index);
+				}
+				else
+				{
+					op.setAlgorithm(algorithm);
+				}
+				
+				estimator.visit(op);
+				double cost = op.getCost();
+				
+				if (algorithm == Join.Algorithm.SORT_MERGE)
+				{
+					cost += sortCost(op.getLeft(), op.getPredicate().getLeftAttribute())
+							+ sortCost(op.getRight(), op.getPredicate().getRightAttribute());
+				}
+				
+				boolean fits = fits(op, algorithm);
+				
+				if (bestAlgorithm == null || (fits && !bestFits) || (fits == bestFits && cost < bestCost))
+				{
+					bestAlgorithm = algorithm;
+					bestIndex     = index;
+					bestSwapped   = swapped;
+					bestFits      = fits;
+					bestCost      = cost;
+				}
+			}
+		}
+		
+		// We're currently in the swapped orientation, so swap back if the
+		// winner was the original
+		if (!bestSwapped) op.swap();
+		
+		if (bestIndex != null)
+		{
+			op.setAlgorithm(bestIndex);
+		}
+		else
+		{
+			op.setAlgorithm(bestAlgorithm);
+		}
+		
+		if (bestAlgorithm == Join.Algorithm.SORT_MERGE)
+		{
+			sortInput(op, 0, op.getPredicate().getLeftAttribute());
+			sortInput(op, 1, op.getPredicate().getRightAttribute());
+		}
+		
+		estimator.visit(op);
+		
+		switch (bestAlgorithm)
+		{
+			// Merged output follows the join attribute
+			case SORT_MERGE:
+				setOrder(op, op.getPredicate().getLeftAttribute());
+				break;
+			
+			// Hash joins stream the probe side in order
+			case HASH:
+				setOrder(op, orders.get(op.getRight()));
+				break;
+			
+			// Index nested loops stream the outer side in order
+			case INDEX_NESTED_LOOP:
+				setOrder(op, orders.get(op.getLeft()));
+				break;
+				
+			default:
+				break;
+		}
+	}
+	
+	/**
+	 * Returns whether a Join, with the given algorithm, keeps the plan
+	 * beneath it within the MemoryBudget
+	 * 
+	 * @param op The Join, which must have been estimated
+	 * @param algorithm Its algorithm
+	 * @return True if it does, or if there is no MemoryBudget
+	 */
+	private boolean fits(Join op, Join.Algorithm algorithm)
+	{
+		if (budget == null) return true;
+		
+		if (algorithm != Join.Algorithm.SORT_MERGE) return budget.fits(op);
+		
+		// The Sorts aren't added until SORT_MERGE wins, but would hold their
+		// inputs while they run
+		long peak = budget.getPeakPages(sorted(op.getLeft(), op.getPredicate().getLeftAttribute()))
+				+ budget.getPeakPages(sorted(op.getRight(), op.getPredicate().getRightAttribute()));
+		
+		return peak <= budget.getBudgetPages();
+	}
+	
+	/**
+	 * @param input An input of a Join
+	 * @param a Its join attribute
+	 * @return The input, under a Sort on its join attribute unless it is
+	 *    already ordered on it
+	 */
+	private Operator sorted(Operator input, Attribute a)
+	{
+		if (a.equals(orders.get(input))) return input;
+		
+		return new Sort(input, a);
+	}
+	
+	/**
+	 * Returns the cost of sorting an input of a Join on its join attribute
+	 * 
+	 * @param input The input
+	 * @param a Its join attribute
+	 * @return The cost of the Sort, or 0 if the input is already ordered
+	 */
+	private double sortCost(Operator input, Attribute a)
+	{
+		if (a.equals(orders.get(input))) return 0;
+		
+		Sort sort = new Sort(input, a);
+		estimator.visit(sort);
+		
+		return sort.getCost() - input.getCost();
+	}
+	
+	/**
+	 * Sorts an input of a Join on its join attribute, unless it is already
+	 * ordered on it
+	 * 
+	 * @param op The Join
+	 * @param index The position of the input
+	 * @param a Its join attribute
+	 */
+	private void sortInput(Join op, int index, Attribute a)
+	{
+		Operator input = op.getInputs().get(index);
+		
+		if (a.equals(orders.get(input))) return;
+		
+		Sort sort = new Sort(input, a);
+		op.setInput(index, sort);
+		visit(sort);
+	}
+	
+	/**
+	 * Finds an index which could be probed for the right input of a Join
+	 * 
+	 * The right input must read a NamedRelation directly, though any number
+	 * of Selects or Projects may sit above the Scan, as these can be applied
+	 * to each matching tuple as it is fetched.
+	 * 
+	 * @param op The Join
+	 * @return The index, or null if there isn't one
+	 */
+	private Index getInnerIndex(Join op)
+	{
+		Operator inner = op.getRight();
+		
+		// Anything else, such as an Aggregate, would be skipped by a probe
+		while (inner instanceof Select || inner instanceof Project)
+		{
+			inner = ((UnaryOperator)inner).getInput();
+		}
+		
+		if (!(inner instanceof Scan)) return null;
+		
+		NamedRelation R = (NamedRelation)((Scan)inner).getRelation();
+		
+		return R.getIndex(op.getPredicate().getRightAttribute());
+	}
+	
+	/**
+	 * Records the order of an Operator's output
+	 * 
+	 * @param op The Operator
+	 * @param order The attribute it is ordered on, or null if unordered
+	 */
+	private void setOrder(Operator op, Attribute order)
+	{
+		if (order != null)
+		{
+			orders.put(op, order);
+		}
+	}
+}
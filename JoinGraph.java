@@ -0,0 +1,381 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The join graph of a single connected component of a query
+ * 
+ * Each relation is a vertex, holding its candidate plans, and each
+ * attr=attr predicate is an edge between the two relations it references.
+ * Sets of relations are given as BitSets of relation indexes.
+ * 
+ * This is used by the join enumerators, which build up sub-plans for
+ * different sets of relations in whatever order suits them. As such, joining
+ * two sub-plans doesn't rely on any state from previous joins: everything
+ * is worked out from the two sets of relations being joined.
+ * 
+ * @see DPEnumerator
+ * @see QuickPickEnumerator
+ * @author Emily Shepherd
+ *
+ */
+public class JoinGraph
+{
+	/**
+	 * The candidate plans for each relation
+	 */
+	private ArrayList<List<PlanCandidate>> relations = new ArrayList<List<PlanCandidate>>();
+	
+	/**
+	 * The join predicates
+	 */
+	private ArrayList<Predicate> predicates = new ArrayList<Predicate>();
+	
+	/**
+	 * The relation holding the left attribute of each predicate
+	 */
+	private ArrayList<Integer> lefts = new ArrayList<Integer>();
+	
+	/**
+	 * The relation holding the right attribute of each predicate
+	 */
+	private ArrayList<Integer> rights = new ArrayList<Integer>();
+	
+	/**
+	 * Pairs of attributes already known to be equal within a single
+	 * relation, such as those a materialised View was built by joining
+	 */
+	private ArrayList<Predicate> equalities = new ArrayList<Predicate>();
+	
+	/**
+	 * The number of times each attribute is required by the query, counting
+	 * each use by a predicate in this graph, or null if Projects should not
+	 * be added
+	 */
+	private HashMap<Attribute, Integer> required;
+	
+	/**
+	 * The Estimator used to cost each sub-plan
+	 */
+	private Estimator estimator;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param estimator The Estimator used to cost each sub-plan
+	 * @param required The number of times each attribute is required, or null
+	 *    if Projects should not be added
+	 */
+	public JoinGraph(Estimator estimator, HashMap<Attribute, Integer> required)
+	{
+		this.estimator = estimator;
+		this.required  = required;
+	}
+	
+	/**
+	 * Adds a relation to the graph
+	 * 
+	 * @param candidates The candidate plans for the relation
+	 * @return The index of the relation
+	 */
+	public int addRelation(List<PlanCandidate> candidates)
+	{
+		relations.add(candidates);
+		
+		return relations.size() - 1;
+	}
+	
+	/**
+	 * Adds a join predicate to the graph
+	 * 
+	 * @param p The predicate
+	 * @param left The index of the relation holding its left attribute
+	 * @param right The index of the relation holding its right attribute
+	 */
+	public void addPredicate(Predicate p, int left, int right)
+	{
+		predicates.add(p);
+		lefts.add(left);
+		rights.add(right);
+	}
+	
+	/**
+	 * Records that two attributes are already equal within a relation, so
+	 * that a predicate between them is implied once they are joined
+	 * 
+	 * @param a The first attribute
+	 * @param b The second attribute
+	 */
+	public void addEquality(Attribute a, Attribute b)
+	{
+		equalities.add(new Predicate(a, b));
+	}
+	
+	/**
+	 * Makes a copy of this graph, with the same predicates, but different
+	 * candidate plans for each relation
+	 * 
+	 * @param candidates The candidate plans for each relation, in the same
+	 *    order as this graph's
+	 * @return The new graph
+	 */
+	public JoinGraph withRelations(List<List<PlanCandidate>> candidates)
+	{
+		JoinGraph graph = new JoinGraph(estimator, required);
+		
+		graph.relations.addAll(candidates);
+		graph.predicates.addAll(predicates);
+		graph.lefts.addAll(lefts);
+		graph.rights.addAll(rights);
+		graph.equalities.addAll(equalities);
+		
+		return graph;
+	}
+	
+	/**
+	 * @return The number of relations
+	 */
+	public int size()
+	{
+		return relations.size();
+	}
+	
+	/**
+	 * @param i The index of a relation
+	 * @return The candidate plans for the relation
+	 */
+	public List<PlanCandidate> getRelation(int i)
+	{
+		return relations.get(i);
+	}
+	
+	/**
+	 * @return The number of predicates
+	 */
+	public int getPredicateCount()
+	{
+		return predicates.size();
+	}
+	
+	/**
+	 * @param k The index of a predicate
+	 * @return The predicate
+	 */
+	public Predicate getPredicate(int k)
+	{
+		return predicates.get(k);
+	}
+	
+	/**
+	 * @param k The index of a predicate
+	 * @return The index of the relation holding its left attribute
+	 */
+	public int getLeft(int k)
+	{
+		return lefts.get(k);
+	}
+	
+	/**
+	 * @param k The index of a predicate
+	 * @return The index of the relation holding its right attribute
+	 */
+	public int getRight(int k)
+	{
+		return rights.get(k);
+	}
+	
+	/**
+	 * Checks if any predicate joins the two sets of relations
+	 * 
+	 * @param a The first set
+	 * @param b The second set
+	 * @return True if there is an edge between them
+	 */
+	public boolean isConnected(BitSet a, BitSet b)
+	{
+		for (int k = 0; k < predicates.size(); k++)
+		{
+			int l = lefts.get(k);
+			int r = rights.get(k);
+			
+			if ((a.get(l) && b.get(r)) || (a.get(r) && b.get(l)))
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Joins the sub-plans for two disjoint sets of relations
+	 * 
+	 * The first predicate between the two sets becomes the Join's predicate.
+	 * Any others are dropped if they are implied by the predicates already
+	 * applied within each side (including those within a single relation,
+	 * see addEquality()), or otherwise added as Selects. If there are
+	 * no predicates between them, a Product is used.
+	 * 
+	 * As with the Optimiser, both sides ordered on the join attributes allows
+	 * a sort-merge join; otherwise the Join is costed as a hash join, which
+	 * keeps the order of its right input.
+	 * 
+	 * Finally, any attributes which are no longer needed, by the query or by
+	 * a predicate to relations outside the two sets, are projected away.
+	 * 
+	 * @param left The candidate plan for the left set
+	 * @param leftSet The left set
+	 * @param right The candidate plan for the right set
+	 * @param rightSet The right set
+	 * @return The candidate plan for both sets
+	 */
+	public PlanCandidate join(PlanCandidate left, BitSet leftSet, PlanCandidate right, BitSet rightSet)
+	{
+		BitSet both                   = (BitSet)leftSet.clone();
+		EquivalenceClasses equal      = new EquivalenceClasses();
+		HashMap<Attribute, Integer> used = new HashMap<Attribute, Integer>();
+		ArrayList<Predicate> crossing = new ArrayList<Predicate>();
+		both.or(rightSet);
+		
+		for (Predicate p : equalities)
+		{
+			equal.union(p.getLeftAttribute(), p.getRightAttribute());
+		}
+		
+		for (int k = 0; k < predicates.size(); k++)
+		{
+			Predicate p = predicates.get(k);
+			int l       = lefts.get(k);
+			int r       = rights.get(k);
+			
+			if (!both.get(l) || !both.get(r)) continue;
+			
+			count(used, p.getLeftAttribute());
+			count(used, p.getRightAttribute());
+			
+			// Predicates within one side have already been applied below
+			if (leftSet.get(l) == leftSet.get(r))
+			{
+				equal.union(p.getLeftAttribute(), p.getRightAttribute());
+			}
+			else if (leftSet.get(l))
+			{
+				crossing.add(new Predicate(new Attribute(p.getLeftAttribute()),
+						new Attribute(p.getRightAttribute())));
+			}
+			else
+			{
+				crossing.add(new Predicate(new Attribute(p.getRightAttribute()),
+						new Attribute(p.getLeftAttribute())));
+			}
+		}
+		
+		Operator plan   = null;
+		Attribute order = null;
+		
+		for (Predicate p : crossing)
+		{
+			Attribute a = p.getLeftAttribute();
+			Attribute b = p.getRightAttribute();
+			
+			if (equal.equal(a, b)) continue;
+			
+			equal.union(a, b);
+			
+			if (plan == null)
+			{
+				Join join = new Join(left.getPlan(), right.getPlan(), p);
+				order     = right.getOrder();
+				
+				if (a.equals(left.getOrder()) && b.equals(right.getOrder()))
+				{
+					join.setAlgorithm(Join.Algorithm.SORT_MERGE);
+					order = a;
+				}
+				
+				estimator.visit(join);
+				plan = join;
+			}
+			else
+			{
+				plan = new Select(plan, p);
+				estimator.visit((Select)plan);
+			}
+		}
+		
+		if (plan == null)
+		{
+			plan = new Product(left.getPlan(), right.getPlan());
+			estimator.visit((Product)plan);
+		}
+		
+		plan = project(plan, used);
+		
+		if (order != null && !plan.getOutput().getAttributes().contains(order))
+		{
+			order = null;
+		}
+		
+		return new PlanCandidate(plan, order);
+	}
+	
+	/**
+	 * Projects away the attributes of a sub-plan which are no longer needed
+	 * 
+	 * @param plan The sub-plan
+	 * @param used The number of times each attribute is used by a predicate
+	 *    within the sub-plan
+	 * @return The sub-plan, headed with a Project if it is needed
+	 */
+	private Operator project(Operator plan, HashMap<Attribute, Integer> used)
+	{
+		if (required == null) return plan;
+		
+		List<Attribute> attrs = plan.getOutput().getAttributes();
+		List<Attribute> keep  = new ArrayList<Attribute>();
+		
+		for (Attribute a : attrs)
+		{
+			int needed = get(required, a) - get(used, a);
+			
+			if (needed > 0 && !keep.contains(a))
+			{
+				keep.add(new Attribute(a));
+			}
+		}
+		
+		// Don't project away everything; the Optimiser deals with sub-plans
+		// which aren't needed at all
+		if (keep.isEmpty() || keep.size() == attrs.size()) return plan;
+		
+		return new ProjectionPlacer(estimator).project(plan, keep);
+	}
+	
+	/**
+	 * Increments the count for an attribute
+	 * 
+	 * @param counts The counts
+	 * @param a The attribute
+	 */
+	private static void count(HashMap<Attribute, Integer> counts, Attribute a)
+	{
+		counts.put(a, get(counts, a) + 1);
+	}
+	
+	/**
+	 * Gets the count for an attribute
+	 * 
+	 * @param counts The counts
+	 * @param a The attribute
+	 * @return Its count, or zero if it isn't present
+	 */
+	private static int get(HashMap<Attribute, Integer> counts, Attribute a)
+	{
+		Integer count = counts.get(a);
+		
+		return count == null ? 0 : count;
+	}
+}
@@ -0,0 +1,353 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Decides, for each attribute only needed above the joins of a plan,
+ * whether to carry it up through them (early materialisation) or to leave
+ * it behind and fetch it afterwards by row ID (late materialisation)
+ * 
+ * Carrying an attribute through the joins makes every intermediate result
+ * wider, so more has to be held in memory, spilled and sorted. Leaving it
+ * behind means carrying the relation's row IDs instead, and looking up
+ * each surviving tuple afterwards with a Fetch placed directly above the
+ * topmost join. This is worth it for wide attributes of relations whose
+ * tuples are mostly discarded by the joins.
+ * 
+ * Each attribute is tried on its own, widest first, by dropping it from
+ * every Project between its Scan and the topmost join (adding one above
+ * the Scan if need be) and fetching it above the join. It is kept late if
+ * the Estimator finds the whole plan cheaper for it.
+ * 
+ * Usage:
+ *   plan = new LateMaterialiser(estimator).place(plan);
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class LateMaterialiser
+{
+	/**
+	 * The Estimator used to cost the plan with each attribute early and late
+	 */
+	private Estimator estimator;
+	
+	/**
+	 * The root of the plan, which is a Fetch if the topmost join was
+	 */
+	private Operator root;
+	
+	/**
+	 * The topmost join of the plan, which Fetches are placed above
+	 */
+	private Operator top;
+	
+	/**
+	 * The Operator reading the topmost join, or null if it is the root
+	 * 
+	 * Once Fetches have been placed, this is the lowest of them.
+	 */
+	private Operator reader;
+	
+	/**
+	 * The Fetch placed above the topmost join for each relation
+	 */
+	private HashMap<NamedRelation, Fetch> fetches = new HashMap<NamedRelation, Fetch>();
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param estimator The Estimator used to cost each choice
+	 */
+	public LateMaterialiser(Estimator estimator)
+	{
+		this.estimator = estimator;
+	}
+	
+	/**
+	 * Materialises each attribute of a plan early or late, whichever is
+	 * cheaper
+	 * 
+	 * @param plan The plan, which must have had its join algorithms chosen
+	 * @return The plan, which is changed in place unless a Fetch is needed
+	 *    above its root
+	 */
+	public Operator place(Operator plan)
+	{
+		root   = plan;
+		top    = plan;
+		reader = null;
+		
+		while (top instanceof UnaryOperator)
+		{
+			reader = top;
+			top    = ((UnaryOperator)top).getInput();
+		}
+		
+		if (!(top instanceof BinaryOperator || top instanceof MultiwayJoin)) return plan;
+		
+		root.accept(estimator);
+		
+		List<Attribute> needed          = top.getOutput().getAttributes();
+		ArrayList<Attribute> used       = new ArrayList<Attribute>();
+		ArrayList<List<Operator>> paths = new ArrayList<List<Operator>>();
+		
+		findUsedAttributes(top, used);
+		findScans(top, new ArrayList<Operator>(), paths);
+		
+		for (List<Operator> path : paths)
+		{
+			Operator scan             = path.get(path.size() - 1);
+			ArrayList<Attribute> late = new ArrayList<Attribute>();
+			
+			for (Attribute a : scan.getOutput().getAttributes())
+			{
+				if (needed.contains(a) && !used.contains(a)) late.add(a);
+			}
+			
+			// The widest attributes save the most
+			Collections.sort(late, new Comparator<Attribute>()
+			{
+				public int compare(Attribute a, Attribute b)
+				{
+					return b.getWidth() - a.getWidth();
+				}
+			});
+			
+			for (Attribute a : late)
+			{
+				tryLate(path, a);
+			}
+		}
+		
+		return root;
+	}
+	
+	/**
+	 * Finds the attributes used by the Operators in a plan, which must be
+	 * carried up to them
+	 * 
+	 * @param op The plan
+	 * @param used Filled with the attributes found
+	 */
+	private void findUsedAttributes(Operator op, List<Attribute> used)
+	{
+		ArrayList<Predicate> predicates = new ArrayList<Predicate>();
+		
+		if (op instanceof Scan)          predicates.addAll(((Scan)op).getPredicates());
+		if (op instanceof IndexScan)     predicates.add(((IndexScan)op).getPredicate());
+		if (op instanceof BitmapScan)    predicates.addAll(((BitmapScan)op).getPredicates());
+		if (op instanceof Select)        predicates.add(((Select)op).getPredicate());
+		if (op instanceof Join)          predicates.add(((Join)op).getPredicate());
+		if (op instanceof SemiJoin)      predicates.add(((SemiJoin)op).getPredicate());
+		if (op instanceof RuntimeFilter) predicates.add(((RuntimeFilter)op).getPredicate());
+		if (op instanceof MultiwayJoin)  predicates.addAll(((MultiwayJoin)op).getPredicates());
+		if (op instanceof Sort)          used.add(((Sort)op).getAttribute());
+		
+		// Partial Aggregates consume their input's attributes, and as they
+		// don't keep row IDs, nothing beneath them can be fetched later anyway
+		if (op instanceof Aggregate)     used.addAll(op.getInputs().get(0).getOutput().getAttributes());
+		
+		for (Predicate p : predicates)
+		{
+			if (p == null) continue;
+			
+			used.add(p.getLeftAttribute());
+			
+			if (!p.equalsValue()) used.add(p.getRightAttribute());
+		}
+		
+		if (op instanceof Scan || op instanceof IndexScan || op instanceof BitmapScan) return;
+		
+		for (Operator input : op.getInputs())
+		{
+			findUsedAttributes(input, used);
+		}
+	}
+	
+	/**
+	 * Finds the path to every Scan whose tuples are passed up whole to the
+	 * top of a plan, so can be identified there by their row IDs
+	 * 
+	 * @param op The plan
+	 * @param path The Operators above op
+	 * @param paths Filled with the path from the top of the plan down to
+	 *    each Scan, including it
+	 */
+	private void findScans(Operator op, List<Operator> path, List<List<Operator>> paths)
+	{
+		ArrayList<Operator> here = new ArrayList<Operator>(path);
+		here.add(op);
+		
+		if (op instanceof Scan || op instanceof IndexScan || op instanceof BitmapScan)
+		{
+			paths.add(here);
+		}
+		else if (op instanceof SemiJoin)
+		{
+			// The right input of a semi-join only filters the left
+			findScans(((SemiJoin)op).getLeft(), here, paths);
+		}
+		else if (op instanceof Project || op instanceof Select || op instanceof Sort || op instanceof RuntimeFilter
+				|| op instanceof BinaryOperator || op instanceof MultiwayJoin)
+		{
+			for (Operator input : op.getInputs())
+			{
+				findScans(input, here, paths);
+			}
+		}
+	}
+	
+	/**
+	 * Leaves an attribute behind at its Scan and fetches it above the
+	 * topmost join, keeping this only if it makes the plan cheaper
+	 * 
+	 * The Projects and Fetch this changes are replaced with new ones rather
+	 * than changed in place, so that if it isn't kept, putting the old ones
+	 * back leaves the plan exactly as it was.
+	 * 
+	 * @param path The path from the topmost join down to the Scan, which
+	 *    is updated with the new Projects if it is kept
+	 * @param a The attribute
+	 */
+	private void tryLate(List<Operator> path, Attribute a)
+	{
+		Operator scan   = path.get(path.size() - 1);
+		NamedRelation R = relationOf(scan);
+		Attribute id    = Fetch.getRowId(R);
+		double before   = root.getCost();
+		Operator last   = reader;
+		
+		// The new path, and the inputs changed on the old one to reach it
+		ArrayList<Operator> trial   = new ArrayList<Operator>();
+		ArrayList<Operator[]> moved = new ArrayList<Operator[]>();
+		Operator below              = scan;
+		Operator replaced           = scan;
+		
+		trial.add(scan);
+		
+		// Make sure the Scan's tuples are projected before they are joined
+		if (!(path.get(path.size() - 2) instanceof Project))
+		{
+			below = new Project(scan, withRowId(scan.getOutput().getAttributes(), a, id));
+			trial.add(0, below);
+		}
+		
+		for (int i = path.size() - 2; i >= 0; i--)
+		{
+			Operator op = path.get(i);
+			
+			if (op instanceof Project)
+			{
+				below    = new Project(below, withRowId(((Project)op).getAttributes(), a, id));
+				replaced = op;
+				trial.add(0, below);
+			
+				continue;
+			}
+			
+			if (below != replaced)
+			{
+				op.setInput(op.getInputs().indexOf(replaced), below);
+				moved.add(new Operator[] { op, replaced, below });
+			}
+			
+			below    = op;
+			replaced = op;
+			trial.add(0, op);
+		}
+		
+		Fetch old                       = fetches.get(R);
+		Operator under                  = old == null ? top : old.getInput();
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		
+		if (old != null) attributes.addAll(old.getAttributes());
+		
+		attributes.add(a);
+		
+		Fetch fetch = new Fetch(under, R, attributes);
+		replace(old == null ? top : old, fetch);
+		
+		if (old == null || reader == old) reader = fetch;
+		
+		root.accept(estimator);
+		
+		if (root.getCost() < before)
+		{
+			fetches.put(R, fetch);
+			path.clear();
+			path.addAll(trial);
+			
+			return;
+		}
+		
+		// Carrying it through the joins was cheaper, so put the old nodes back
+		replace(fetch, old == null ? top : old);
+		reader = last;
+		
+		for (Operator[] move : moved)
+		{
+			move[0].setInput(move[0].getInputs().indexOf(move[2]), move[1]);
+		}
+		
+		root.accept(estimator);
+	}
+	
+	/**
+	 * @param attributes The attributes kept by a Project
+	 * @param a An attribute to leave behind
+	 * @param id The row ID of its relation
+	 * @return The attributes without a, but with id
+	 */
+	private static List<Attribute> withRowId(List<Attribute> attributes, Attribute a, Attribute id)
+	{
+		ArrayList<Attribute> kept = new ArrayList<Attribute>(attributes);
+		kept.remove(a);
+		
+		if (!kept.contains(id)) kept.add(id);
+		
+		return kept;
+	}
+	
+	/**
+	 * Replaces an Operator on the chain from the root down to the topmost
+	 * join, which is either the topmost join or one of the Fetches above it
+	 * 
+	 * @param old The Operator
+	 * @param op Its replacement
+	 */
+	private void replace(Operator old, Operator op)
+	{
+		if (root == old)
+		{
+			root = op;
+			
+			return;
+		}
+		
+		Operator above = root;
+		
+		while (((UnaryOperator)above).getInput() != old)
+		{
+			above = ((UnaryOperator)above).getInput();
+		}
+		
+		above.setInput(0, op);
+	}
+	
+	/**
+	 * @param scan A Scan, IndexScan or BitmapScan
+	 * @return The relation it reads
+	 */
+	private static NamedRelation relationOf(Operator scan)
+	{
+		if (scan instanceof Scan)       return (NamedRelation)((Scan)scan).getRelation();
+		if (scan instanceof BitmapScan) return (NamedRelation)((BitmapScan)scan).getRelation();
+		
+		return (NamedRelation)((IndexScan)scan).getRelation();
+	}
+}
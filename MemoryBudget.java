@@ -0,0 +1,198 @@
+package sjdb;
+
+/**
+ * Estimates the most working memory a plan holds at once, so that plans
+ * can be kept within the memory budget of their query
+ * 
+ * Each operator is taken to be granted at most M pages (the working memory
+ * of the CostModel) for its hash table, sort buffer, trie or Bloom filter,
+ * and to hold it while the inputs it pipelines from run. For a hash join,
+ * this means the hash table built from its left input is counted while
+ * its right input runs, so the tables of a chain of hash joins probed one
+ * after the other are all counted at once. The peak is worked out
+ * bottom-up:
+ *   + Scans, IndexScans, Selects and Projects hold nothing of their own
+ *   + BitmapScans hold the bitmaps they AND together
+ *   + HASH Aggregates hold min(P(O), M) while their input runs
+ *   + Sorts hold min(P(R), M) while their input runs
+ *   + RuntimeFilters hold their Bloom filter while their input runs
+ *   + HASH Joins and SemiJoins hold min(P(R), M) for their build side R
+ *     while their probe side runs
+ *   + BLOCK_NESTED_LOOP Joins and Products hold min(P(R), M) of their
+ *     left input R while either side runs
+ *   + SORT_MERGE Joins run both sides at once
+ *   + MultiwayJoins hold a trie of each input until they finish
+ * 
+ * The Optimiser, given a MemoryBudget (see Optimiser.setMemoryBudget()),
+ * prefers join algorithms which keep the plan within it (see
+ * JoinAlgorithmSelector), and reports the peak of the plan it returns.
+ * 
+ * Usage:
+ *   MemoryBudget budget = new MemoryBudget(memoryPages, budgetPages);
+ *   plan.accept(estimator);
+ *   boolean fits        = budget.fits(plan);
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class MemoryBudget
+{
+	/**
+	 * The most pages of working memory granted to a single operator
+	 */
+	private long memoryPages;
+	
+	/**
+	 * The pages of working memory the whole query may hold at once
+	 */
+	private long budgetPages;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param memoryPages The most pages granted to a single operator
+	 * @param budgetPages The pages the whole query may hold at once
+	 */
+	public MemoryBudget(long memoryPages, long budgetPages)
+	{
+		this.memoryPages = memoryPages;
+		this.budgetPages = budgetPages;
+	}
+	
+	/**
+	 * @return The pages the whole query may hold at once
+	 */
+	public long getBudgetPages()
+	{
+		return budgetPages;
+	}
+	
+	/**
+	 * Returns whether a plan's working memory stays within the budget
+	 * 
+	 * @param plan The plan, which must have been estimated
+	 * @return True if it never holds more than the budget
+	 */
+	public boolean fits(Operator plan)
+	{
+		return getPeakPages(plan) <= budgetPages;
+	}
+	
+	/**
+	 * Returns the most pages of working memory a plan holds at once
+	 * 
+	 * @param op The plan, which must have been estimated
+	 * @return The pages held at the peak
+	 */
+	public long getPeakPages(Operator op)
+	{
+		if (op instanceof BitmapScan)
+		{
+			long bitmaps = 0;
+			
+			for (Index index : ((BitmapScan)op).getIndexes())
+			{
+				bitmaps += index.getLookupPages();
+			}
+			
+			return bitmaps;
+		}
+		else if (op instanceof Scan || op instanceof IndexScan)
+		{
+			return 0;
+		}
+		else if (op instanceof Sort)
+		{
+			Operator input = ((Sort)op).getInput();
+			
+			return grant(input.getOutput()) + getPeakPages(input);
+		}
+		else if (op instanceof Aggregate)
+		{
+			Aggregate agg = (Aggregate)op;
+			long peak     = getPeakPages(agg.getInput());
+			
+			if (agg.getAlgorithm() == Aggregate.Algorithm.STREAM) return peak;
+			
+			return grant(agg.getOutput()) + peak;
+		}
+		else if (op instanceof RuntimeFilter)
+		{
+			RuntimeFilter filter = (RuntimeFilter)op;
+			
+			return getFilterPages(filter) + getPeakPages(filter.getInput());
+		}
+		else if (op instanceof UnaryOperator)
+		{
+			return getPeakPages(((UnaryOperator)op).getInput());
+		}
+		else if (op instanceof MultiwayJoin)
+		{
+			long tries = 0;
+			long peak  = 0;
+			
+			for (Operator input : op.getInputs())
+			{
+				tries += grant(input.getOutput());
+				peak   = Math.max(peak, getPeakPages(input));
+			}
+			
+			return tries + peak;
+		}
+		
+		BinaryOperator bin = (BinaryOperator)op;
+		long left          = getPeakPages(bin.getLeft());
+		long right         = getPeakPages(bin.getRight());
+		
+		if (op instanceof SemiJoin)
+		{
+			return Math.max(right, grant(bin.getRight().getOutput()) + left);
+		}
+		
+		Join.Algorithm algorithm = op instanceof Join ? ((Join)op).getAlgorithm() : Join.Algorithm.BLOCK_NESTED_LOOP;
+		if (algorithm == null) algorithm = Join.Algorithm.HASH;
+		
+		switch (algorithm)
+		{
+			case SORT_MERGE:
+				return left + right;
+			
+			case INDEX_NESTED_LOOP:
+				// The inner side is only probed through its index, whose pages
+				// are read through the buffer pool
+				return left;
+			
+			case BLOCK_NESTED_LOOP:
+				return grant(bin.getLeft().getOutput()) + Math.max(left, right);
+			
+			default:
+				return Math.max(left, grant(bin.getLeft().getOutput()) + right);
+		}
+	}
+	
+	/**
+	 * Returns the pages of a Bloom filter sized for its source's tuples, at
+	 * its false positive rate p, which takes:
+	 *   -T(S).ln(p) / ln(2)^2
+	 * bits
+	 * 
+	 * @param filter The RuntimeFilter
+	 * @return The pages of its Bloom filter
+	 */
+	private static long getFilterPages(RuntimeFilter filter)
+	{
+		double n    = filter.getSource().getOutput().getTupleCount();
+		double bits = -n * Math.log(filter.getFalsePositiveRate()) / (Math.log(2) * Math.log(2));
+		
+		return (long)Math.ceil(bits / 8 / Relation.PAGE_SIZE);
+	}
+	
+	/**
+	 * @param R A relation held by an operator
+	 * @return The pages it is granted
+	 */
+	private long grant(Relation R)
+	{
+		return Math.min(R.getPageCount(), memoryPages);
+	}
+}
@@ -0,0 +1,88 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This class represents a worst-case optimal multi-way join operator,
+ * such as Leapfrog Triejoin, which joins all of its inputs at once, one
+ * join attribute at a time, rather than a pair of relations at a time.
+ * Each input is indexed as a trie (or sorted) on its join attributes, and
+ * the matching values of each attribute are found by intersecting the
+ * inputs which have it.
+ * 
+ * It never builds an intermediate result larger than the AGM bound on
+ * its output, which makes it the better choice for cyclic joins, whose
+ * pairwise intermediate results can be far larger than the final one.
+ * 
+ * @author Emily Shepherd
+ */
+public class MultiwayJoin extends Operator {
+	private List<Predicate> predicates;
+	/**
+	 * The AGM bound on the join attribute values, set by the Estimator
+	 */
+	private long bound;
+	
+	/**
+	 * Create a new multi-way join operator.
+	 * @param inputs Child operators, of which there should be at least three
+	 * @param predicates Join predicates, each between the outputs of two of
+	 *        the children
+	 */
+	public MultiwayJoin(List<Operator> inputs, List<Predicate> predicates) {
+		super();
+		this.inputs.addAll(inputs);
+		this.predicates = new ArrayList<Predicate>(predicates);
+	}
+	
+	public List<Predicate> getPredicates() {
+		return this.predicates;
+	}
+	
+	/**
+	 * Return the worst-case size of this join: the most combinations of
+	 * join attribute values its inputs could possibly produce, whatever
+	 * those values are
+	 * @return AGM bound
+	 */
+	public long getBound() {
+		return this.bound;
+	}
+	
+	/**
+	 * Set the worst-case size of this join
+	 * @param bound AGM bound
+	 */
+	public void setBound(long bound) {
+		this.bound = bound;
+	}
+	
+	/* (non-Javadoc)
+	 * @see sjdb.Operator#accept(sjdb.OperatorVisitor)
+	 */
+	public void accept(PlanVisitor visitor) {
+		super.accept(visitor);
+		visitor.visit(this);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		String ret = "MULTIWAY JOIN [";
+		Iterator<Predicate> iter = this.predicates.iterator();
+		while (iter.hasNext()) {
+			ret += iter.next().toString();
+			if (iter.hasNext()) {
+				ret += ",";
+			}
+		}
+		ret += "]";
+		for (Operator input : this.inputs) {
+			ret += " (" + input.toString() + ")";
+		}
+		return ret;
+	}
+}
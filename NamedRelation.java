@@ -3,6 +3,9 @@
  */
 package sjdb;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This class represents a named relation which is fed into a query plan
  * @author nmg
@@ -13,6 +16,16 @@ public class NamedRelation extends Relation {
 	 */
 	private String name;
 	
+	/**
+	 * The indexes declared on this relation
+	 */
+	private List<Index> indexes;
+	
+	/**
+	 * The zone maps kept for this relation
+	 */
+	private List<ZoneMap> zoneMaps;
+	
 	/**
 	 * Create a new named relation with a given name and tuple count
 	 * @param name The name of the relation
@@ -21,6 +34,104 @@ public class NamedRelation extends Relation {
 	public NamedRelation(String name, int size) {
 		super(size);
 		this.name = name;
+		this.indexes = new ArrayList<Index>();
+		this.zoneMaps = new ArrayList<ZoneMap>();
+	}
+	
+	/**
+	 * Declare an index on this relation
+	 * @param index The index
+	 */
+	public void addIndex(Index index) {
+		this.indexes.add(index);
+	}
+	
+	/**
+	 * Return the indexes declared on this relation
+	 * @return The indexes
+	 */
+	public List<Index> getIndexes() {
+		return this.indexes;
+	}
+	
+	/**
+	 * Return an index on the given attribute, preferring a hash index
+	 * if there are several. Bitmap indexes are only read by BitmapScans,
+	 * so are never returned.
+	 * @param attribute The indexed attribute
+	 * @return The index, or null if the attribute isn't indexed
+	 */
+	public Index getIndex(Attribute attribute) {
+		Index found = null;
+		for (Index index : this.indexes) {
+			if (index.getType() == Index.Type.BITMAP) {
+				continue;
+			}
+			if (index.getAttribute().equals(attribute)) {
+				if (found == null || index.getType() == Index.Type.HASH) {
+					found = index;
+				}
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Declare a zone map on this relation
+	 * @param zoneMap The zone map
+	 */
+	public void addZoneMap(ZoneMap zoneMap) {
+		this.zoneMaps.add(zoneMap);
+	}
+	
+	/**
+	 * Return the zone maps kept for this relation
+	 * @return The zone maps
+	 */
+	public List<ZoneMap> getZoneMaps() {
+		return this.zoneMaps;
+	}
+	
+	/**
+	 * Return the zone map on the given attribute
+	 * @param attribute The attribute
+	 * @return The zone map, or null if the attribute has none
+	 */
+	public ZoneMap getZoneMap(Attribute attribute) {
+		for (ZoneMap zoneMap : this.zoneMaps) {
+			if (zoneMap.getAttribute().equals(attribute)) {
+				return zoneMap;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Return the bitmap index on the given attribute
+	 * @param attribute The indexed attribute
+	 * @return The index, or null if the attribute has no bitmap index
+	 */
+	public Index getBitmapIndex(Attribute attribute) {
+		for (Index index : this.indexes) {
+			if (index.getType() == Index.Type.BITMAP && index.getAttribute().equals(attribute)) {
+				return index;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Return the attribute this relation is stored in order of
+	 * @return The attribute of the clustered B-tree index, or null if the
+	 * relation is unordered
+	 */
+	public Attribute getSortOrder() {
+		for (Index index : this.indexes) {
+			if (index.isClustered() && index.getType() == Index.Type.BTREE) {
+				return index.getAttribute();
+			}
+		}
+		return null;
 	}
 
 	/* (non-Javadoc)
@@ -23,6 +23,11 @@ public abstract class Operator {
 	 * The relation produced by this operator as output.
 	 */
 	protected Relation output;
+	/**
+	 * The estimated total cost of producing this operator's output,
+	 * including the cost of all operators below it.
+	 */
+	protected double cost;
 	
 	public Operator() {
 		this.inputs = new ArrayList<Operator>();
@@ -47,6 +52,15 @@ public abstract class Operator {
 		this.inputs.add(op);
 	}
 	
+	/**
+	 * Replace one of the child operators of this operator.
+	 * @param index Position of the child to be replaced
+	 * @param op Replacement child operator
+	 */
+	protected void setInput(int index, Operator op) {
+		this.inputs.set(index, op);
+	}
+	
 	/**
 	 * Return the relation produced by this operator as output.
 	 * @return Output relation
@@ -63,6 +77,22 @@ public abstract class Operator {
 		this.output = reln;
 	}
 	
+	/**
+	 * Return the estimated total cost of this operator and its inputs.
+	 * @return Cost
+	 */
+	public double getCost() {
+		return this.cost;
+	}
+	
+	/**
+	 * Set the estimated total cost of this operator and its inputs.
+	 * @param cost Cost
+	 */
+	public void setCost(double cost) {
+		this.cost = cost;
+	}
+	
 	/**
 	 * Accept a visitor to this operator.
 	 * @param visitor Visitor to be accepted
@@ -0,0 +1,74 @@
+package sjdb;
+
+/**
+ * The outcome of an anytime optimisation
+ * 
+ * @see Optimiser.optimise(Operator, CancellationToken)
+ * @author Emily Shepherd
+ *
+ */
+public class OptimisationResult
+{
+	/**
+	 * The best plan found
+	 */
+	private Operator plan;
+	
+	/**
+	 * True if the search completed
+	 */
+	private boolean optimal;
+	
+	/**
+	 * The most pages of working memory the plan holds at once, or -1 if
+	 * there was no MemoryBudget
+	 */
+	private long peakPages;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param plan The best plan found
+	 * @param optimal True if the search completed
+	 * @param peakPages The pages of working memory the plan holds at its
+	 *    peak, or -1 if there was no MemoryBudget
+	 */
+	public OptimisationResult(Operator plan, boolean optimal, long peakPages)
+	{
+		this.plan      = plan;
+		this.optimal   = optimal;
+		this.peakPages = peakPages;
+	}
+	
+	/**
+	 * @return The best plan found
+	 */
+	public Operator getPlan()
+	{
+		return plan;
+	}
+	
+	/**
+	 * Returns whether the plan is known to be optimal
+	 * 
+	 * This is the case when every connected component of the join graph was
+	 * searched exhaustively before the optimisation was cancelled. The plan
+	 * is then the cheapest of all bushy join trees which don't use Products
+	 * within a component.
+	 * 
+	 * @return True if the plan is optimal
+	 */
+	public boolean isOptimal()
+	{
+		return optimal;
+	}
+	
+	/**
+	 * @return The most pages of working memory the plan holds at once (see
+	 *    MemoryBudget), or -1 if the Optimiser had no MemoryBudget
+	 */
+	public long getPeakPages()
+	{
+		return peakPages;
+	}
+}
@@ -2,9 +2,12 @@ package sjdb;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.Map.Entry;
 
 /**
@@ -29,6 +32,16 @@ public class Optimiser
 	
 	private ArrayList<Predicate> joins = new ArrayList<Predicate>();
 	
+	/**
+	 * The attr=attr predicates which have been applied so far by the Product
+	 * optimiser, as classes of attributes now known to be equal
+	 * 
+	 * This lets it tell whether a predicate between two attributes which have
+	 * ended up in the same sub-plan is already implied, or must still be
+	 * applied as a Select.
+	 */
+	private EquivalenceClasses applied = new EquivalenceClasses();
+	
 	/**
 	 * A list of all required attributes, with the number
 	 * of times they are needed
@@ -45,17 +58,104 @@ public class Optimiser
 	
 	/**
 	 * The Estimator used to inform the join reordering process
+	 * 
+	 * This accumulates the cost of each candidate plan bottom-up, using its
+	 * CostModel
 	 */
 	private Estimator estimator = new Estimator();
 	
+	/**
+	 * The alternative plans kept for each sub-plan the optimiser has built
+	 * 
+	 * Each key is the cheapest plan for a set of relations. Its value holds
+	 * that plan, plus any more expensive plans for the same relations which
+	 * deliver a useful order (System R's "interesting orders"). Sub-plans
+	 * which aren't in here are assumed to be unordered.
+	 */
+	private HashMap<Operator, ArrayList<PlanCandidate>> candidates =
+			new HashMap<Operator, ArrayList<PlanCandidate>>();
+	
+	/**
+	 * Components with at most this many relations are joined by exhaustive
+	 * dynamic programming
+	 */
+	private int dpLimit = 10;
+	
+	/**
+	 * Components with at most this many relations (but too many for dynamic
+	 * programming) are joined greedily. Anything larger is sampled randomly.
+	 */
+	private int greedyLimit = 40;
+	
+	/**
+	 * The time, in milliseconds, each component may spend being joined
+	 */
+	private long timeBudget = 50;
+	
+	/**
+	 * The token for the anytime optimisation in progress, or null if this
+	 * is an ordinary optimisation
+	 */
+	private CancellationToken token = null;
+	
+	/**
+	 * Cleared by an anytime optimisation if any component wasn't searched
+	 * exhaustively
+	 */
+	private boolean optimal = true;
+	
+	/**
+	 * The number of candidates dynamic programming has pruned, because they
+	 * cost more than the greedy plan
+	 */
+	private long pruned = 0;
+	
+	/**
+	 * A partial Aggregate is only pushed below a Join if it leaves at most
+	 * this fraction of the tuples of the input it aggregates
+	 */
+	private static final double AGGREGATE_REDUCTION = 0.5;
+	
+	/**
+	 * The source of randomness for the QuickPickEnumerator
+	 * 
+	 * This is seeded so that the same query always gets the same plan.
+	 */
+	private Random random = new Random(0);
+	
+	/**
+	 * The Catalogue, which holds the materialised Views that queries may be
+	 * rewritten to use, or null if there is none
+	 */
+	private Catalogue cat = null;
+	
+	/**
+	 * The MemoryBudget join algorithms are chosen to keep plans within, or
+	 * null if there is none
+	 */
+	private MemoryBudget budget = null;
+	
 	/**
 	 * Constructor
 	 * 
-	 * Does nothing other than to confirm to the given template
+	 * @param cat The Catalogue
+	 */
+	public Optimiser(Catalogue cat)
+	{
+		this.cat = cat;
+	}
+	
+	/**
+	 * Constructor
 	 * 
-	 * @param cat I don't use this... sorry! :/
+	 * @param cat The Catalogue
+	 * @param costModel The CostModel used to compare candidate plans
 	 */
-	public Optimiser(Catalogue cat) {}
+	public Optimiser(Catalogue cat, CostModel costModel)
+	{
+		this.cat  = cat;
+		estimator = new Estimator(costModel);
+	}
 	
 	/**
 	 * Constructor
@@ -64,6 +164,102 @@ public class Optimiser
 	 */
 	public Optimiser() {}
 	
+	/**
+	 * Sets the largest component joined by exhaustive dynamic programming
+	 * 
+	 * @param dpLimit The number of relations
+	 */
+	public void setDPLimit(int dpLimit)
+	{
+		this.dpLimit = Math.min(dpLimit, DPEnumerator.MAX_RELATIONS);
+	}
+	
+	/**
+	 * Sets the largest component joined greedily, rather than randomly
+	 * 
+	 * @param greedyLimit The number of relations
+	 */
+	public void setGreedyLimit(int greedyLimit)
+	{
+		this.greedyLimit = greedyLimit;
+	}
+	
+	/**
+	 * Sets the time each component may spend being joined
+	 * 
+	 * If dynamic programming runs out of time, the component is joined
+	 * greedily instead. Random sampling carries on until the time is up.
+	 * 
+	 * @param millis The time, in milliseconds
+	 */
+	public void setTimeBudget(long millis)
+	{
+		this.timeBudget = millis;
+	}
+	
+	/**
+	 * Sets the MemoryBudget plans should keep within
+	 * 
+	 * Join algorithms which would take a plan over the budget are only
+	 * chosen if none would keep it within (see JoinAlgorithmSelector).
+	 * 
+	 * @param budget The MemoryBudget, or null for none
+	 */
+	public void setMemoryBudget(MemoryBudget budget)
+	{
+		this.budget = budget;
+	}
+	
+	/**
+	 * Gets the number of candidates pruned by dynamic programming
+	 * 
+	 * Each component it joins is first joined greedily, and the cost of that
+	 * plan is used as an upper bound. This counts, over every optimisation
+	 * so far, the candidates which were thrown away for exceeding it.
+	 * 
+	 * @return The number pruned
+	 */
+	public long getPruned()
+	{
+		return pruned;
+	}
+	
+	/**
+	 * Optimises the given Operator, for as long as it is allowed to
+	 * 
+	 * This starts from a cheap greedy join order for each component of the
+	 * join graph, then keeps looking for better ones, either exhaustively
+	 * (for components small enough) or by random sampling, until the token is
+	 * cancelled. The best complete plan found by then is returned.
+	 * 
+	 * Each component's search is also stopped after the time budget (see
+	 * setTimeBudget()), so this still returns if the token is never
+	 * cancelled.
+	 * 
+	 * @param o The Operator to be optimised
+	 * @param token Tells the optimisation when to stop, eg when a deadline
+	 *    passes, or when cancel() is called from another thread
+	 * @return The best plan found, whether it is known to be optimal and
+	 *    its peak working memory
+	 */
+	public OptimisationResult optimise(Operator o, CancellationToken token)
+	{
+		this.token   = token;
+		this.optimal = true;
+		
+		try
+		{
+			Operator plan = optimise(o);
+			long peak     = budget == null ? -1 : budget.getPeakPages(plan);
+			
+			return new OptimisationResult(plan, optimal, peak);
+		}
+		finally
+		{
+			this.token = null;
+		}
+	}
+	
 	/**
 	 * Optimises the given Operator
 	 * 
@@ -83,11 +279,12 @@ public class Optimiser
 		// Switching on class names... yeeesssssssss
 		switch (o.getClass().getName())
 		{
-			case "sjdb.Scan":    return optimise((Scan)o);
-			case "sjdb.Project": return optimise((Project)o);
-			case "sjdb.Select":  return optimise((Select)o);
+			case "sjdb.Scan":      return optimise((Scan)o);
+			case "sjdb.Project":   return optimise((Project)o);
+			case "sjdb.Select":    return optimise((Select)o);
+			case "sjdb.Aggregate": return optimise((Aggregate)o);
 			case "sjdb.Product": 
-			case "sjdb.Join":    return optimise((BinaryOperator)o);
+			case "sjdb.Join":      return optimise((BinaryOperator)o);
 			default:             return null;
 		}
 	}
@@ -96,7 +293,19 @@ public class Optimiser
 	 * Optimises a Scan Operator
 	 * 
 	 * Scans aren't actually optimised, however this method adds any
-	 * "attr=val" select statements directly above the new Scan.
+	 * "attr=val" select statements directly above the new Scan, or into the
+	 * Scan itself if their attribute has a zone map.
+	 * 
+	 * If any of those selects is on an indexed attribute, the relation can
+	 * instead be read with an IndexScan, looking that value up, with the
+	 * remaining selects above it. All of the selects on attributes with
+	 * bitmap indexes can be looked up at once with a BitmapScan. Each of
+	 * these access paths is costed and the cheapest is used.
+	 * 
+	 * The relation can also be read in the order of any B-tree index on an
+	 * attribute used by a join. This is usually more expensive, but is kept
+	 * as a candidate alongside the cheapest plan as its order may allow a
+	 * sort-merge join further up.
 	 * 
 	 * @param plan The Scan to be optimised
 	 * @return A new, optimised, Operator, headed with all appropriate
@@ -104,11 +313,18 @@ public class Optimiser
 	 */
 	public Operator optimise(Scan plan)
 	{
-		Relation r             = plan.getRelation();
-		List<Attribute> attrs  = r.getAttributes();
-		Operator newPlan       = new Scan((NamedRelation)r);
-		Iterator<Predicate> it = selects.iterator();
-		estimator.visit((Scan)newPlan);
+		// A View built from just this relation may save applying its Selects
+		if (!(plan.getRelation() instanceof View))
+		{
+			ArrayList<Operator> leaves = new ArrayList<Operator>();
+			leaves.add(plan);
+			plan = (Scan)useViews(leaves).get(0);
+		}
+		
+		NamedRelation r           = (NamedRelation)plan.getRelation();
+		List<Attribute> attrs     = r.getAttributes();
+		ArrayList<Predicate> mine = new ArrayList<Predicate>();
+		Iterator<Predicate> it    = selects.iterator();
 		
 		// Look through the select operations that we have saved, to see if
 		// any of them contain attributes provided by this relation
@@ -120,291 +336,1235 @@ public class Optimiser
 			if (attrs.contains(attr))
 			{
 				Attribute a = new Attribute(attr);
-				Predicate p = new Predicate(a, predicate.getRightValue());
-				newPlan     = new Select(newPlan, p);
+				mine.add(new Predicate(a, predicate.getRightValue()));
 				
-				estimator.visit((Select)newPlan);
 				decreaseRequired(a);
 				it.remove();
 			}
 		}
 		
-		return addRequiredProjections(newPlan);
+		ArrayList<PlanCandidate> options = new ArrayList<PlanCandidate>();
+		
+		// The full Scan is always possible. It applies the selects on
+		// attributes with zone maps itself, skipping the blocks they rule out
+		ArrayList<Predicate> zoned = new ArrayList<Predicate>();
+		ArrayList<Predicate> rest  = new ArrayList<Predicate>();
+		
+		for (Predicate p : mine)
+		{
+			if (r.getZoneMap(p.getLeftAttribute()) != null)
+			{
+				zoned.add(p);
+			}
+			else
+			{
+				rest.add(p);
+			}
+		}
+		
+		Operator newPlan = new Scan(r, zoned);
+		estimator.visit((Scan)newPlan);
+		addProjectedCandidate(options, addSelects(newPlan, rest, null), r.getSortOrder());
+		
+		// Then see if looking up any of the values in an index is cheaper
+		for (Predicate p : mine)
+		{
+			Index index = r.getIndex(p.getLeftAttribute());
+			
+			if (index == null) continue;
+			
+			Operator indexPlan = new IndexScan(r, index, p);
+			estimator.visit((IndexScan)indexPlan);
+			addProjectedCandidate(options, addSelects(indexPlan, mine, p), null);
+		}
+		
+		// The selects on attributes with bitmap indexes can be answered
+		// together, by ANDing their bitmaps before any tuple is read
+		ArrayList<Index> bitmaps    = new ArrayList<Index>();
+		ArrayList<Predicate> mapped = new ArrayList<Predicate>();
+		ArrayList<Predicate> others = new ArrayList<Predicate>();
+		
+		for (Predicate p : mine)
+		{
+			Index index = r.getBitmapIndex(p.getLeftAttribute());
+			
+			if (index == null)
+			{
+				others.add(p);
+			}
+			else
+			{
+				bitmaps.add(index);
+				mapped.add(p);
+			}
+		}
+		
+		if (!mapped.isEmpty())
+		{
+			BitmapScan bitmapPlan = new BitmapScan(r, bitmaps, mapped);
+			estimator.visit(bitmapPlan);
+			addProjectedCandidate(options, addSelects(bitmapPlan, others, null), r.getSortOrder());
+		}
+		
+		// Reading a whole relation in index order only helps if something
+		// could use that order
+		for (Index index : r.getIndexes())
+		{
+			if (index.getType() != Index.Type.BTREE || index.isClustered()) continue;
+			if (!isInteresting(index.getAttribute())) continue;
+			
+			Operator orderedPlan = new IndexScan(r, index);
+			estimator.visit((IndexScan)orderedPlan);
+			addProjectedCandidate(options, addSelects(orderedPlan, mine, null), index.getAttribute());
+		}
+		
+		return keepCandidates(options);
+	}
+	
+	/**
+	 * Stacks a Select Operator on top of the given plan for each of the
+	 * given predicates
+	 * 
+	 * @param plan The plan to add Selects to
+	 * @param predicates The attr=val predicates to select on
+	 * @param skip A predicate which the plan already applies, or null
+	 * @return The plan, headed with the Selects
+	 */
+	private Operator addSelects(Operator plan, List<Predicate> predicates, Predicate skip)
+	{
+		for (Predicate p : predicates)
+		{
+			if (p == skip) continue;
+			
+			plan = new Select(plan, p);
+			estimator.visit((Select)plan);
+		}
+		
+		return plan;
+	}
+	
+	/**
+	 * Optimises a Project Operator
+	 * 
+	 * When a Project Operator appears anywhere in the tree, its attributes
+	 * are noted, and it is removed. New Project Operators are added into
+	 * the tree whenever required by the other functions.
+	 * 
+	 * Once the plan is complete, any attribute which is only needed above
+	 * the joins may be left behind and fetched by row ID after them (see
+	 * LateMaterialiser).
+	 * 
+	 * A Project over an Aggregate only picks out the attributes selected
+	 * from its output, so stays where it is above the optimised Aggregate.
+	 * 
+	 * @param plan The Project Operation to be optimised
+	 * @return A new, optimised, Operator with Projects moved down
+	 */
+	public Operator optimise(Project plan)
+	{
+		if (plan.getInput() instanceof Aggregate)
+		{
+			Project project = new Project(optimise((Aggregate)plan.getInput()), plan.getAttributes());
+			estimator.visit(project);
+			
+			return project;
+		}
+		
+		// Make a note of all attributes, so they can be added into
+		// a Project later down the line
+		for (Attribute a : plan.getAttributes())
+		{
+			increaseRequired(a);
+		}
+		
+		outputStar       = false; // Turn on Project Operators
+		Operator newPlan = optimise(plan.getInput());
+		newPlan          = addRequiredProjections(newPlan, true);
+		outputStar       = true; // Turn off Project Operators
+		
+		// Attributes only needed at the top may be cheaper to fetch by row ID
+		// after the joins than to carry through them
+		return new LateMaterialiser(estimator).place(newPlan);
+	}
+	
+	/**
+	 * Optimises an Aggregate Operator
+	 * 
+	 * The Aggregate stays at the top of the plan, and its input is optimised
+	 * as if it were Projected onto the attributes the Aggregate needs. Then,
+	 * if it is cheaper, a partial Aggregate is pushed down below one of the
+	 * Joins (see pushAggregate()), and any attribute only aggregated may be
+	 * fetched late (see LateMaterialiser).
+	 * 
+	 * @param plan The Aggregate Operator to be optimised
+	 * @return A new, optimised, Operator
+	 */
+	public Operator optimise(Aggregate plan)
+	{
+		for (Attribute a : plan.getGroupBy())
+		{
+			increaseRequired(a);
+		}
+		
+		for (Aggregation agg : plan.getAggregations())
+		{
+			if (agg.getAttribute() != null) increaseRequired(agg.getAttribute());
+		}
+		
+		// Counts and sums depend on how many tuples there are, so no relation
+		// may be dropped just because none of its attributes are needed
+		for (Aggregation agg : plan.getAggregations())
+		{
+			if (agg.getFunction() == Aggregation.Function.COUNT || agg.getFunction() == Aggregation.Function.SUM)
+			{
+				keepRelations(plan.getInput());
+				break;
+			}
+		}
+		
+		outputStar       = false; // Turn on Project Operators
+		Operator newPlan = optimise(plan.getInput());
+		newPlan          = addRequiredProjections(newPlan, false);
+		outputStar       = true; // Turn off Project Operators
+		
+		newPlan = pushAggregate(newPlan, plan.getGroupBy(), plan.getAggregations());
+		
+		return new LateMaterialiser(estimator).place(newPlan);
+	}
+	
+	/**
+	 * Marks an attribute of every relation scanned as required, unless one
+	 * already is, so that none are dropped from the plan
+	 * 
+	 * @param op The plan to look through
+	 */
+	private void keepRelations(Operator op)
+	{
+		if (op instanceof Scan)
+		{
+			List<Attribute> attrs = ((Scan)op).getRelation().getAttributes();
+			
+			for (Attribute a : attrs)
+			{
+				Integer required = requiredAttrs.get(a);
+				
+				if (required != null && required > 0) return;
+			}
+			
+			if (!attrs.isEmpty()) increaseRequired(attrs.get(0));
+			
+			return;
+		}
+		
+		for (Operator input : op.getInputs())
+		{
+			keepRelations(input);
+		}
+	}
+	
+	/**
+	 * Aggregates a plan, pushing a partial Aggregate below a Join if it is
+	 * cheaper
+	 * 
+	 * An input of a Join can be aggregated early if everything aggregated
+	 * comes from it. It is grouped on the grouping attributes it has, plus
+	 * any of its attributes used by predicates above it. Every tuple in a
+	 * group then joins to the same tuples, so the final Aggregate can combine
+	 * the partial results (see Aggregation.combine()).
+	 * 
+	 * Only inputs which the partial Aggregate would shrink to at most
+	 * AGGREGATE_REDUCTION of their size are tried. Of those, the one giving
+	 * the cheapest plan overall is used, if it beats aggregating at the top.
+	 * 
+	 * @param plan The optimised input of the Aggregate
+	 * @param groupBy The attributes to group on
+	 * @param aggregations The aggregations to compute
+	 * @return The aggregated plan
+	 */
+	private Operator pushAggregate(Operator plan, List<Attribute> groupBy, List<Aggregation> aggregations)
+	{
+		ArrayList<Aggregation> combined = new ArrayList<Aggregation>();
+		
+		for (Aggregation agg : aggregations)
+		{
+			combined.add(agg.combine());
+		}
+		
+		ArrayList<Operator> inputs = new ArrayList<Operator>();
+		findJoinInputs(plan, inputs);
+		
+		Operator bestPlan = null;
+		double bestCost   = 0;
+		
+		for (Operator input : inputs)
+		{
+			List<Attribute> attrs = input.getOutput().getAttributes();
+			boolean covered       = true;
+			
+			for (Aggregation agg : aggregations)
+			{
+				if (agg.getAttribute() != null && !attrs.contains(agg.getAttribute())) covered = false;
+			}
+			
+			if (!covered) continue;
+			
+			ArrayList<Attribute> used = new ArrayList<Attribute>(groupBy);
+			findUsedAttributes(plan, input, used);
+			
+			ArrayList<Attribute> keys = new ArrayList<Attribute>();
+			
+			for (Attribute a : attrs)
+			{
+				if (used.contains(a) && !keys.contains(a)) keys.add(new Attribute(a));
+			}
+			
+			Aggregate partial = new Aggregate(input, keys, aggregations, true);
+			estimator.visit(partial);
+			
+			if (partial.getOutput().getTupleCount() > AGGREGATE_REDUCTION * input.getOutput().getTupleCount())
+			{
+				continue;
+			}
+			
+			Operator trial = new Aggregate(replaceInput(plan, input, partial, aggregations), groupBy, combined);
+			trial.accept(new JoinAlgorithmSelector(estimator, budget));
+			
+			if (bestPlan == null || trial.getCost() < bestCost)
+			{
+				bestPlan = trial;
+				bestCost = trial.getCost();
+			}
+		}
+		
+		Operator whole = new Aggregate(plan, groupBy, aggregations);
+		whole.accept(new JoinAlgorithmSelector(estimator, budget));
+		
+		if (bestPlan != null && bestCost < whole.getCost())
+		{
+			// Choosing algorithms again settles any Joins shared with the
+			// plans which were tried
+			bestPlan.accept(new JoinAlgorithmSelector(estimator, budget));
+			
+			return bestPlan;
+		}
+		
+		return whole;
+	}
+	
+	/**
+	 * Finds the inputs of every Join in a plan, looking down through
+	 * Projects, Selects and Products (but not into semi-join reducers)
+	 * 
+	 * @param op The plan
+	 * @param inputs Filled with the inputs found
+	 */
+	private void findJoinInputs(Operator op, List<Operator> inputs)
+	{
+		if (!(op instanceof Project || op instanceof Select || op instanceof Join || op instanceof Product)) return;
+		
+		for (Operator input : op.getInputs())
+		{
+			if (op instanceof Join) inputs.add(input);
+			
+			findJoinInputs(input, inputs);
+		}
+	}
+	
+	/**
+	 * Finds the attributes used by predicates in a plan, except within
+	 * one of its sub-plans
+	 * 
+	 * @param op The plan
+	 * @param skip The sub-plan to leave out
+	 * @param used Filled with the attributes found
+	 */
+	private void findUsedAttributes(Operator op, Operator skip, List<Attribute> used)
+	{
+		if (op == skip || op instanceof Scan || op instanceof IndexScan || op instanceof BitmapScan) return;
+		
+		Predicate p = null;
+		
+		if (op instanceof Select)        p = ((Select)op).getPredicate();
+		if (op instanceof Join)          p = ((Join)op).getPredicate();
+		if (op instanceof SemiJoin)      p = ((SemiJoin)op).getPredicate();
+		if (op instanceof RuntimeFilter) p = ((RuntimeFilter)op).getPredicate();
+		
+		if (p != null)
+		{
+			used.add(p.getLeftAttribute());
+			
+			if (!p.equalsValue()) used.add(p.getRightAttribute());
+		}
+		
+		for (Operator input : op.getInputs())
+		{
+			findUsedAttributes(input, skip, used);
+		}
+	}
+	
+	/**
+	 * Copies the path from the top of a plan down to one of its sub-plans,
+	 * replacing that sub-plan with a partial Aggregate of it
+	 * 
+	 * Projects on the way keep the aggregated results in place of the
+	 * attributes which were aggregated.
+	 * 
+	 * @param op The plan
+	 * @param target The sub-plan to replace
+	 * @param partial Its replacement
+	 * @param aggregations The aggregations computed by the replacement
+	 * @return The new plan, sharing everything off the path with the old
+	 */
+	private Operator replaceInput(Operator op, Operator target, Aggregate partial, List<Aggregation> aggregations)
+	{
+		if (op == target) return partial;
+		
+		if (!(op instanceof Project || op instanceof Select || op instanceof Join || op instanceof Product)) return op;
+		
+		List<Operator> inputs   = op.getInputs();
+		ArrayList<Operator> ins = new ArrayList<Operator>();
+		boolean changed         = false;
+		
+		for (Operator input : inputs)
+		{
+			Operator in = replaceInput(input, target, partial, aggregations);
+			changed     = changed || in != input;
+			ins.add(in);
+		}
+		
+		if (!changed) return op;
+		
+		if (op instanceof Project)
+		{
+			List<Attribute> keys     = partial.getGroupBy();
+			ArrayList<Attribute> out = new ArrayList<Attribute>();
+			
+			for (Attribute a : ((Project)op).getAttributes())
+			{
+				if (keys.contains(a) || !partial.getInput().getOutput().getAttributes().contains(a))
+				{
+					out.add(a);
+				}
+				
+				for (Aggregation agg : aggregations)
+				{
+					Attribute result = new Attribute(agg.getName());
+					
+					if (a.equals(agg.getAttribute()) && !out.contains(result)) out.add(result);
+				}
+			}
+			
+			for (Aggregation agg : aggregations)
+			{
+				Attribute result = new Attribute(agg.getName());
+				
+				// COUNT(*) has no attribute to take the place of
+				if (agg.getAttribute() == null && !out.contains(result)) out.add(result);
+			}
+			
+			Project project = new Project(ins.get(0), out);
+			estimator.visit(project);
+			
+			return project;
+		}
+		else if (op instanceof Select)
+		{
+			Select select = new Select(ins.get(0), ((Select)op).getPredicate());
+			estimator.visit(select);
+			
+			return select;
+		}
+		else if (op instanceof Join)
+		{
+			Join join = new Join(ins.get(0), ins.get(1), ((Join)op).getPredicate());
+			estimator.visit(join);
+			
+			return join;
+		}
+		
+		Product product = new Product(ins.get(0), ins.get(1));
+		estimator.visit(product);
+		
+		return product;
+	}
+	
+	/**
+	 * Optimises a Select Operator
+	 * 
+	 * When a Select Operator is found, it is noted and removed. 
+	 * These will then be either added directly above a Scan Operator (in
+	 * the case of "attr=val") or used to create a Join statement.
+	 * 
+	 * @param plan The Select Operator to optimise
+	 * @return A new, optimised, Operator with Selects moved down / converted
+	 *     to Joins
+	 */
+	public Operator optimise(Select plan)
+	{
+		// Register the attribute as required so Project Operations
+		// down the line know to include it
+		increaseRequired(plan.getPredicate().getLeftAttribute());
+		
+		if (plan.getPredicate().equalsValue())
+		{
+			selects.add(plan.getPredicate());
+		}
+		else
+		{
+			increaseRequired(plan.getPredicate().getRightAttribute());
+			joins.add(plan.getPredicate());
+		}
+		
+		return optimise(plan.getInput());
+	}
+	
+	/**
+	 * Optimises a Product Operator
+	 * 
+	 * This method works differently to the optimise() methods above. Whereas
+	 * they continued recursively searching the tree in a depth-first manner,
+	 * this processes each side width-first, and brings up any Product
+	 * operations below it:
+	 * <pre>
+	 *        PRODUCT                     PRODUCT
+	 *          / \                         /|\
+	 *         /   \                       / | \
+	 *     PRODUCT  A      Becomes        /  |  \
+	 *       / \          =========>     /   |   \
+	 *      /   \                       /    |    \
+	 *     B     C                    O(A)  O(B)  O(C)
+	 * 
+	 * (Where O(X) is the optimised operator)
+	 * </pre>
+	 * 
+	 * These are then split into the connected components of the join graph:
+	 * groups of relations linked to each other by join predicates. A relation
+	 * which isn't in any join predicate is a component on its own. Each
+	 * component is joined up independently (see joinComponent()), and only
+	 * then are the components combined with Products (see
+	 * combineComponents()).
+	 * 
+	 * This means Products are never considered part way through a series of
+	 * Joins, and the number of candidate pairs costed each round only grows
+	 * with the size of a component, not the whole query.
+	 * 
+	 * Before any of this, the join graph is enlarged with the predicates
+	 * implied by the ones given (see addImpliedPredicates()), so that, for
+	 * example, A_a=B_b and B_b=C_c also allow A and C to be joined directly,
+	 * and so are in the same component.
+	 *   
+	 * @param plan The Product Operator to optimise
+	 * @return A new, optimised, Operator with Selects moved down / converted
+	 *     to Joins
+	 */
+	public Operator optimise(BinaryOperator op)
+	{
+		applied                                            = new EquivalenceClasses();
+		addImpliedPredicates();
+		ArrayList<OperatorHolder> all                      = new ArrayList<OperatorHolder>();
+		HashMap<Predicate, ArrayList<OperatorHolder>> rels = getAllRels(rewriteViews(op), all);
+		
+		// Happens if all the Products were redundant. Eg:
+		//   PROJECT [age] ((Department) TIMES (Project))
+		// As age is not a member of either of those NamedRelations, getAllRels
+		// won't return them
+		if (all.size() == 0)
+		{
+			Scan ret = new Scan(new NamedRelation("<Empty>", 0));
+			estimator.visit(ret);
+			return ret;
+		}
+		
+		ArrayList<Operator> plans = new ArrayList<Operator>();
+		
+		for (Component component : getComponents(rels, all))
+		{
+			plans.add(joinComponent(component));
+		}
+		
+		Operator newOp = combineComponents(plans);
+		
+		// Now the join order has been decided, choose how each Join will
+		// actually be executed
+		newOp.accept(new JoinAlgorithmSelector(estimator, budget));
+		
+		// Then, filter the probe side of each hash join by its build side,
+		// where that discards enough early on
+		new RuntimeFilterPlacer(estimator).place(newOp);
+		
+		return newOp;
+	}
+	
+	/**
+	 * Joins up the relations of a single connected component
+	 * 
+	 * The strategy used depends on the size of the component (see
+	 * enumerate()). Then, if it comes out cheaper:
+	 *   + An acyclic component is joined with each relation fully reduced
+	 *     by semi-joins first (see SemiJoinReducer)
+	 *   + A cyclic component is joined all at once by a MultiwayJoin
+	 * 
+	 * @param component The component to join
+	 * @return The joined Operator
+	 */
+	private Operator joinComponent(Component component)
+	{
+		// A lone relation has nothing to join to
+		if (component.rels.isEmpty())
+		{
+			return component.members.get(0).getOperator();
+		}
+		
+		JoinGraph graph             = getJoinGraph(component);
+		List<PlanCandidate> options = enumerate(graph);
+		SemiJoinReducer reducer = new SemiJoinReducer(graph, estimator);
+		JoinGraph reduced       = reducer.reduce();
+		
+		if (reduced != null)
+		{
+			List<PlanCandidate> reducedOptions = enumerate(reduced);
+			
+			if (reducedOptions.get(0).getCost() < options.get(0).getCost())
+			{
+				options = reducedOptions;
+			}
+		}
+		else if (!reducer.isAcyclic())
+		{
+			PlanCandidate multiway = multiwayJoin(graph);
+			
+			if (multiway.getCost() < options.get(0).getCost())
+			{
+				options = new ArrayList<PlanCandidate>();
+				options.add(multiway);
+			}
+		}
+		
+		// The enumerators don't touch our bookkeeping, so record that all of
+		// this component's predicates have now been dealt with
+		for (Predicate p : component.rels.keySet())
+		{
+			decreaseRequired(p.getLeftAttribute());
+			decreaseRequired(p.getRightAttribute());
+			applied.union(p.getLeftAttribute(), p.getRightAttribute());
+		}
+		
+		return keepCandidates(new ArrayList<PlanCandidate>(options));
+	}
+	
+	/**
+	 * Joins up a cyclic component all at once
+	 * 
+	 * The pairwise joins of a cyclic component can build intermediate
+	 * results far larger than the final one, which a MultiwayJoin never
+	 * does. It is costed by its AGM bound, so it only wins where the
+	 * best pairwise plan is worse than that worst case.
+	 * 
+	 * @param graph The component's JoinGraph
+	 * @return The MultiwayJoin of the cheapest plan for each relation
+	 */
+	private PlanCandidate multiwayJoin(JoinGraph graph)
+	{
+		ArrayList<Operator> inputs      = new ArrayList<Operator>();
+		ArrayList<Predicate> predicates = new ArrayList<Predicate>();
+		
+		for (int i = 0; i < graph.size(); i++)
+		{
+			inputs.add(graph.getRelation(i).get(0).getPlan());
+		}
+		
+		for (int k = 0; k < graph.getPredicateCount(); k++)
+		{
+			predicates.add(graph.getPredicate(k));
+		}
+		
+		MultiwayJoin join = new MultiwayJoin(inputs, predicates);
+		estimator.visit(join);
+		
+		return new PlanCandidate(join, null);
+	}
+	
+	/**
+	 * Enumerates the join orders of a component's JoinGraph
+	 * 
+	 * The strategy used depends on the size of the component:
+	 *   + Small components are joined optimally by dynamic programming
+	 *     (see DPEnumerator)
+	 *   + Medium ones, or small ones where that runs out of time, are joined
+	 *     greedily (see GreedyEnumerator)
+	 *   + Large ones are joined by random sampling until the time budget
+	 *     runs out (see QuickPickEnumerator)
+	 * 
+	 * @param graph The component's JoinGraph
+	 * @return The candidate plans, cheapest first
+	 */
+	private List<PlanCandidate> enumerate(JoinGraph graph)
+	{
+		int n                       = graph.size();
+		List<PlanCandidate> options = null;
+		
+		if (token != null)
+		{
+			options = improveComponent(graph);
+		}
+		else if (n > greedyLimit)
+		{
+			CancellationToken deadline = new CancellationToken(timeBudget);
+			options                    = new ArrayList<PlanCandidate>();
+			options.add(new QuickPickEnumerator(graph, deadline, random).enumerate());
+		}
+		else
+		{
+			PlanCandidate greedy = new GreedyEnumerator(graph).enumerate();
+			
+			if (n <= dpLimit)
+			{
+				options = exactJoin(graph, greedy, new CancellationToken(timeBudget));
+			}
+			
+			// Too big for dynamic programming, or it ran out of time
+			if (options == null)
+			{
+				options = new ArrayList<PlanCandidate>();
+				options.add(greedy);
+			}
+		}
+		
+		return options;
+	}
+	
+	/**
+	 * Joins up a component for an anytime optimisation
+	 * 
+	 * A greedy plan is found first, which is always completed. If there's
+	 * time, and the component is small enough, this is replaced by the
+	 * optimal plan from dynamic programming. Otherwise, random samples are
+	 * taken, looking for anything cheaper than the greedy plan.
+	 * 
+	 * @param graph The component's JoinGraph
+	 * @return The candidate plans, cheapest first
+	 */
+	private List<PlanCandidate> improveComponent(JoinGraph graph)
+	{
+		CancellationToken deadline       = new CancellationToken(token, timeBudget);
+		ArrayList<PlanCandidate> options = new ArrayList<PlanCandidate>();
+		PlanCandidate greedy             = new GreedyEnumerator(graph).enumerate();
+		options.add(greedy);
+		
+		if (graph.size() <= dpLimit)
+		{
+			List<PlanCandidate> exact = exactJoin(graph, greedy, deadline);
+			
+			if (exact != null) return exact;
+		}
+		
+		optimal                = false;
+		PlanCandidate improved = new QuickPickEnumerator(graph, deadline, random).enumerate(greedy.getCost());
+		
+		if (improved != null)
+		{
+			options.set(0, improved);
+		}
+		
+		return options;
+	}
+	
+	/**
+	 * Joins up a component by dynamic programming, using a greedy plan as an
+	 * upper bound
+	 * 
+	 * @param graph The component's JoinGraph
+	 * @param greedy The greedy plan for the same graph
+	 * @param deadline Tells the DPEnumerator when to give up
+	 * @return The candidate plans, cheapest first, or null if cancelled
+	 */
+	private List<PlanCandidate> exactJoin(JoinGraph graph, PlanCandidate greedy, CancellationToken deadline)
+	{
+		DPEnumerator dp = new DPEnumerator(graph, deadline);
+		dp.setBound(greedy.getCost());
+		
+		List<PlanCandidate> options = dp.enumerate();
+		pruned                     += dp.getPruned();
+		
+		// Nothing beat the greedy plan, so it must have been the best
+		if (options != null && options.isEmpty())
+		{
+			options = new ArrayList<PlanCandidate>();
+			options.add(greedy);
+		}
+		
+		return options;
+	}
+	
+	/**
+	 * Builds the JoinGraph of a single connected component
+	 * 
+	 * @param component The component
+	 * @return Its JoinGraph
+	 */
+	private JoinGraph getJoinGraph(Component component)
+	{
+		JoinGraph graph                          = new JoinGraph(estimator, outputStar ? null : requiredAttrs);
+		HashMap<OperatorHolder, Integer> indexes = new HashMap<OperatorHolder, Integer>();
+		
+		for (OperatorHolder hold : component.members)
+		{
+			indexes.put(hold, graph.addRelation(getCandidates(hold.getOperator())));
+		}
+		
+		for (Entry<Predicate, ArrayList<OperatorHolder>> e : component.rels.entrySet())
+		{
+			Predicate p                   = e.getKey();
+			ArrayList<OperatorHolder> ops = e.getValue();
+			int first                     = indexes.get(ops.get(0));
+			int second                    = indexes.get(ops.get(1));
+			
+			// We know the two relations, but not which way round they are
+			if (ops.get(0).getOperator().getOutput().getAttributes().contains(p.getLeftAttribute()))
+			{
+				graph.addPredicate(p, first, second);
+			}
+			else
+			{
+				graph.addPredicate(p, second, first);
+			}
+		}
+		
+		// Attributes already equated, eg within a View, stay equal above it
+		for (List<Attribute> members : applied.getClasses())
+		{
+			for (int i = 1; i < members.size(); i++)
+			{
+				graph.addEquality(members.get(0), members.get(i));
+			}
+		}
+		
+		return graph;
+	}
+	
+	/**
+	 * Splits the relations into the connected components of the join graph
+	 * 
+	 * Components are merged, smaller into larger, as each join predicate is
+	 * seen. Predicates which only matched one relation (because one of their
+	 * attributes doesn't exist) can never be joined, so are dropped here.
+	 * 
+	 * @param rels The join predicates, with the relations they join
+	 * @param all Every relation
+	 * @return The components, in the order their relations were found
+	 */
+	private ArrayList<Component> getComponents(HashMap<Predicate, ArrayList<OperatorHolder>> rels,
+			ArrayList<OperatorHolder> all)
+	{
+		HashMap<OperatorHolder, Component> owners = new HashMap<OperatorHolder, Component>();
+		ArrayList<Component> components           = new ArrayList<Component>();
+		
+		for (OperatorHolder hold : all)
+		{
+			Component c = new Component();
+			c.members.add(hold);
+			owners.put(hold, c);
+		}
+		
+		for (Entry<Predicate, ArrayList<OperatorHolder>> e : rels.entrySet())
+		{
+			ArrayList<OperatorHolder> ops = e.getValue();
+			
+			if (ops.size() != 2) continue;
+			
+			Component a = owners.get(ops.get(0));
+			Component b = owners.get(ops.get(1));
+			
+			if (a != b)
+			{
+				if (a.members.size() < b.members.size())
+				{
+					Component swap = a;
+					a              = b;
+					b              = swap;
+				}
+				
+				a.members.addAll(b.members);
+				a.rels.putAll(b.rels);
+				
+				for (OperatorHolder hold : b.members)
+				{
+					owners.put(hold, a);
+				}
+			}
+			
+			a.rels.put(e.getKey(), ops);
+		}
+		
+		for (OperatorHolder hold : all)
+		{
+			Component c = owners.get(hold);
+			
+			if (!components.contains(c))
+			{
+				components.add(c);
+			}
+		}
+		
+		return components;
+	}
+	
+	/**
+	 * Combines the joined components with Products
+	 * 
+	 * The pair of components whose Product is cheapest is combined first,
+	 * and this is repeated until one plan is left. As the cost of a Product
+	 * grows with the size of its inputs, this combines components in order
+	 * of size, except where the cost says that multiplying two small
+	 * components together early beats adding them one by one to a large one.
+	 * 
+	 * @param plans The joined plan of each component
+	 * @return The combined plan
+	 */
+	private Operator combineComponents(ArrayList<Operator> plans)
+	{
+		while (plans.size() > 1)
+		{
+			Product cheapest = null;
+			int left         = 0;
+			int right        = 0;
+			
+			for (int i = 0; i < plans.size(); i++)
+			{
+				for (int j = i + 1; j < plans.size(); j++)
+				{
+					Product testOp = new Product(plans.get(i), plans.get(j));
+					estimator.visit(testOp);
+					
+					if (cheapest == null || testOp.getCost() < cheapest.getCost())
+					{
+						cheapest = testOp;
+						left     = i;
+						right    = j;
+					}
+				}
+			}
+			
+			plans.remove(right);
+			plans.remove(left);
+			plans.add(addRequiredProjections(cheapest, false));
+		}
+		
+		return plans.get(0);
 	}
 	
 	/**
-	 * Optimises a Project Operator
+	 * Adds every predicate implied by the transitive closure of the known
+	 * attr=attr predicates
 	 * 
-	 * When a Project Operator appears anywhere in the tree, its attributes
-	 * are noted, and it is removed. New Project Operators are added into
-	 * the tree whenever required by the other functions.
+	 * The join attributes are grouped into classes of attributes that must be
+	 * equal. Within each class:
+	 *   + Every pair of attributes which doesn't already have a predicate gets
+	 *     one, so any relations in the class can be joined directly, rather
+	 *     than only through a Product.
+	 *   + Any attr=val select on one member is copied to every other member,
+	 *     so each relation in the class is filtered as early as possible.
 	 * 
-	 * @param plan The Project Operation to be optimised
-	 * @return A new, optimised, Operator with Projects moved down
+	 * The new predicates are marked as required, exactly as if they had
+	 * appeared in the query.
 	 */
-	public Operator optimise(Project plan)
+	private void addImpliedPredicates()
 	{
-		// Make a note of all attributes, so they can be added into
-		// a Project later down the line
-		for (Attribute a : plan.getAttributes())
+		EquivalenceClasses classes = new EquivalenceClasses();
+		
+		for (Predicate p : joins)
 		{
-			increaseRequired(a);
+			classes.union(p.getLeftAttribute(), p.getRightAttribute());
 		}
 		
-		outputStar       = false; // Turn on Project Operators
-		Operator newPlan = optimise(plan.getInput());
-		newPlan          = addRequiredProjections(newPlan);
-		outputStar       = true; // Turn off Project Operators
+		for (List<Attribute> members : classes.getClasses())
+		{
+			for (int i = 0; i < members.size(); i++)
+			{
+				for (int j = i + 1; j < members.size(); j++)
+				{
+					Attribute a = members.get(i);
+					Attribute b = members.get(j);
+					
+					if (hasJoin(a, b)) continue;
+					
+					joins.add(new Predicate(new Attribute(a), new Attribute(b)));
+					increaseRequired(a);
+					increaseRequired(b);
+				}
+			}
+		}
 		
-		return newPlan;
+		for (Predicate p : new ArrayList<Predicate>(selects))
+		{
+			for (Attribute a : classes.getMembers(p.getLeftAttribute()))
+			{
+				if (hasSelect(a, p.getRightValue())) continue;
+				
+				selects.add(new Predicate(new Attribute(a), p.getRightValue()));
+				increaseRequired(a);
+			}
+		}
 	}
 	
 	/**
-	 * Optimises a Select Operator
+	 * Rewrites a tree of Products to read from materialised Views
 	 * 
-	 * When a Select Operator is found, it is noted and removed. 
-	 * These will then be either added directly above a Scan Operator (in
-	 * the case of "attr=val") or used to create a Join statement.
-	 * 
-	 * @param plan The Select Operator to optimise
-	 * @return A new, optimised, Operator with Selects moved down / converted
-	 *     to Joins
+	 * @param op The Product tree
+	 * @return The same tree, or a new one if any Views were used
+	 * @see useViews()
 	 */
-	public Operator optimise(Select plan)
+	private Operator rewriteViews(BinaryOperator op)
 	{
-		// Register the attribute as required so Project Operations
-		// down the line know to include it
-		increaseRequired(plan.getPredicate().getLeftAttribute());
+		ArrayList<Operator> leaves = new ArrayList<Operator>();
+		ArrayDeque<Operator> stack = new ArrayDeque<Operator>();
+		stack.push(op);
 		
-		if (plan.getPredicate().equalsValue())
+		while (!stack.isEmpty())
 		{
-			selects.add(plan.getPredicate());
+			Operator look = stack.pop();
+			
+			if (look instanceof BinaryOperator)
+			{
+				stack.push(((BinaryOperator)look).getRight());
+				stack.push(((BinaryOperator)look).getLeft());
+			}
+			else
+			{
+				leaves.add(look);
+			}
 		}
-		else
+		
+		List<Operator> rewritten = useViews(leaves);
+		
+		if (rewritten.equals(leaves)) return op;
+		
+		// The order doesn't matter, as getAllRels() flattens them again
+		Operator tree = rewritten.get(0);
+		
+		for (int i = 1; i < rewritten.size(); i++)
 		{
-			increaseRequired(plan.getPredicate().getRightAttribute());
-			joins.add(plan.getPredicate());
+			tree = new Product(tree, rewritten.get(i));
 		}
 		
-		return optimise(plan.getInput());
+		return tree;
 	}
 	
 	/**
-	 * Optimises a Product Operator
+	 * Replaces Scans with Scans of materialised Views where possible
 	 * 
-	 * This method works differently to the optimise() methods above. Whereas
-	 * they continued recursively searching the tree in a depth-first manner,
-	 * this processes each side width-first, and brings up any Product
-	 * operations below it:
-	 * <pre>
-	 *        PRODUCT                     PRODUCT
-	 *          / \                         /|\
-	 *         /   \                       / | \
-	 *     PRODUCT  A      Becomes        /  |  \
-	 *       / \          =========>     /   |   \
-	 *      /   \                       /    |    \
-	 *     B     C                    O(A)  O(B)  O(C)
+	 * A View can be used when every relation it was built from is being
+	 * scanned, every predicate it was built with is known to hold in the
+	 * query, and it has kept every attribute which is still needed once the
+	 * predicates it has already applied are dropped. Those predicates are
+	 * then removed, and any others on its attributes are applied to the
+	 * View instead, as compensating Selects. The Project at the top of the
+	 * query takes care of any attributes it has which aren't needed.
 	 * 
-	 * (Where O(X) is the optimised operator)
-	 * </pre>
-	 * 
-	 * It then compares each possible pair with the set of known Select
-	 * Statements, to determine if it is a possible join, and to estimate
-	 * its cost. For example:
-	 * <pre>
-	 *   Known Selects
-	 *   -------------
-	 *     SELECT * FROM A, B WHERE A_a=B_b
-	 *     SELECT * FROM B, C WHERE B_b=C_c
-	 *   
-	 *   Pairs
-	 *   -----
-	 *     JOIN (A, B)           Possible (SELECT * FROM A, B...), T = 1000
-	 *     JOIN (B, C)           Possible (SELECT * FROM B, C...), T = 40
-	 *     JOIN (A, C)           Not Possible (There is no "SELECT * FROM A, C...")
-	 * </pre>
+	 * The attributes equated by the View's own predicates are recorded as
+	 * applied, so that any other predicate they imply, such as one added by
+	 * addImpliedPredicates(), is dropped rather than applied again above it.
 	 * 
-	 * Of those that are possible, the JOIN with the lowest cost is
-	 * chosen. In this example, it was the JOIN of B and C:
-	 *   J = JOIN(B, C)
+	 * Views covering the most relations are tried first, then the smallest.
 	 * 
-	 * In the remaining join possibilities, any reference to B or C is
-	 * replaced with a reference to the new Join of B and C:
-	 *   JOIN(A, B) -> JOIN(A, J)
+	 * This must be run after addImpliedPredicates(), so that a predicate
+	 * which is only implied by the query is still recognised.
 	 * 
-	 * The process is then repeated until the list of pairs is reduced to zero
-	 *   
-	 * @param plan The Product Operator to optimise
-	 * @return A new, optimised, Operator with Selects moved down / converted
-	 *     to Joins
+	 * @param leaves The Operators under the Products
+	 * @return The Operators to use in their place
 	 */
-	public Operator optimise(BinaryOperator op)
+	private List<Operator> useViews(List<Operator> leaves)
 	{
-		Operator newOp                                     = null;
-		HashMap<Predicate, ArrayList<OperatorHolder>> rels = getAllRels(op);
+		ArrayList<Operator> result = new ArrayList<Operator>(leaves);
 		
-		// Happens if all the Products were redundant. Eg:
-		//   PROJECT [age] ((Department) TIMES (Project))
-		// As age is not a member of either of those NamedRelations, getAllRels
-		// won't return them
-		if (rels.size() == 0)
+		if (cat == null || cat.getViews().isEmpty()) return result;
+		
+		ArrayList<View> views = new ArrayList<View>(cat.getViews());
+		
+		Collections.sort(views, new Comparator<View>()
 		{
-			Scan ret = new Scan(new NamedRelation("<Empty>", 0));
-			estimator.visit(ret);
-			return ret;
-		}
+			@Override
+			public int compare(View a, View b)
+			{
+				int size = b.getRelations().size() - a.getRelations().size();
+				
+				return size != 0 ? size : a.getTupleCount() - b.getTupleCount();
+			}
+		});
 		
-		// Our "rels" array is a set of Predicates with the appropriate relations
-		// attached.
-		// While this isn't empty, there's potential a'joining to do!
-		while (rels.size() > 0)
+		for (View view : views)
 		{
-			OperatorHolder leftHolder      = null;
-			OperatorHolder rightHolder     = null;
-			Predicate completedPredicate   = null;
-			BinaryOperator mostRestrictive = null;
-			Iterator<Entry<Predicate, ArrayList<OperatorHolder>>> l =
-					rels.entrySet().iterator();
+			ArrayList<Operator> covered  = new ArrayList<Operator>();
+			ArrayList<Attribute> attrs   = new ArrayList<Attribute>();
+			ArrayList<Predicate> applies = new ArrayList<Predicate>();
 			
-			// Do a pass over the pairs that we have, to estimate the cost of each
-			while (l.hasNext())
+			for (NamedRelation r : view.getRelations())
 			{
-				Entry<Predicate, ArrayList<OperatorHolder>> e = l.next();
-				Predicate p                                   = e.getKey();
-				ArrayList<OperatorHolder> ops                 = e.getValue();
-				
-				// We expect this to have 2 Operators as all names are mutally exclusive.
-				// If it only has the one, there are a couple of exceptional cases...
-				if (ops.size() == 1)
+				for (Operator leaf : result)
 				{
-					// If we've got an empty Predicate, this is getAllRels' way of telling
-					// us it only found one valid Relation, so we can just throw it out
-					if (p.getLeftAttribute() == null)
-					{
-						return ops.get(0).getOperator();
-					}
-					// If there was a Predicate attached to it, one of its attributes
-					// must reference an attribute that doesn't exist
-					else
+					if (leaf instanceof Scan && ((Scan)leaf).getRelation() == r)
 					{
-						l.remove();
-						continue;
+						covered.add(leaf);
+						attrs.addAll(r.getAttributes());
 					}
 				}
+			}
+			
+			if (covered.size() != view.getRelations().size()) continue;
+			if (!viewApplies(view, attrs, applies)) continue;
+			
+			for (Predicate p : applies)
+			{
+				decreaseRequired(p.getLeftAttribute());
 				
-				Operator left                                 = ops.get(0).getOperator();
-				Operator right                                = ops.get(1).getOperator();
-				BinaryOperator testOp;
-				
-				// If these are null, it means they were originally products,
-				// but they've been dealt with now, so we can ignore them
-				if (left == null || right == null)
-				{
-					l.remove();
-					continue;
-				}
-				// If the left attribute is null, this is one of the "empty" Predicates
-				// created by getAllRels to indicate this must be checked as a Product
-				// Operator rather than a Join
-				else if (p.getLeftAttribute() == null)
+				if (p.equalsValue())
 				{
-					testOp = new Product(left, right);
-					
-					estimator.visit((Product)testOp);
+					selects.remove(p);
 				}
 				else
 				{
-					Attribute leftA  = null;
-					Attribute rightA = null;
-					
-					// This is safe to do as we've constructed this array, so we know they
-					// are in here... we just don't know which way round.
-					try
-					{
-						leftA  = left.getOutput().getAttribute(p.getLeftAttribute());
-						rightA = right.getOutput().getAttribute(p.getRightAttribute());
-					}
-					catch (Exception ex)
-					{
-						leftA  = left.getOutput().getAttribute(p.getRightAttribute());
-						rightA = right.getOutput().getAttribute(p.getLeftAttribute());
-					}
-					
-					leftA  = new Attribute(leftA);
-					rightA = new Attribute(rightA);
-					
-					testOp = new Join(left, right, new Predicate(leftA, rightA));
-					
-					// Do the cost calculation!
-					estimator.visit((Join)testOp);
+					decreaseRequired(p.getRightAttribute());
+					joins.remove(p);
 				}
+			}
+			
+			for (Predicate p : view.getPredicates())
+			{
+				if (!p.equalsValue()) applied.union(p.getLeftAttribute(), p.getRightAttribute());
+			}
+			
+			result.removeAll(covered);
+			result.add(new Scan(view));
+		}
+		
+		return result;
+	}
 	
-				// If this is the first, we have nothing to compare it to, so we'll
-				// declare it the most restrictive for now
-				if (mostRestrictive == null)
-				{
-					mostRestrictive    = testOp;
-					completedPredicate = p;
-					leftHolder         = ops.get(0);
-					rightHolder        = ops.get(1);
-				}
-				// We have a previous most restrictive... check if this join would be
-				// less costly.
-				// If it is, update it to be the winner.
-				else if (testOp.getOutput().getTupleCount() < mostRestrictive.getOutput().getTupleCount())
+	/**
+	 * Checks if a View can replace the relations it was built from
+	 * 
+	 * @param view The View
+	 * @param attrs The attributes of the relations it was built from
+	 * @param applies Filled with the query's predicates which the View has
+	 *    already applied
+	 * @return True if the View can be used
+	 */
+	private boolean viewApplies(View view, List<Attribute> attrs, List<Predicate> applies)
+	{
+		EquivalenceClasses equal = new EquivalenceClasses();
+		
+		// The query must be at least as selective as the View
+		for (Predicate p : view.getPredicates())
+		{
+			if (p.equalsValue())
+			{
+				if (!hasSelect(p.getLeftAttribute(), p.getRightValue())) return false;
+			}
+			else
+			{
+				if (!hasJoin(p.getLeftAttribute(), p.getRightAttribute())) return false;
+				
+				equal.union(p.getLeftAttribute(), p.getRightAttribute());
+			}
+		}
+		
+		for (Predicate p : joins)
+		{
+			if (attrs.contains(p.getLeftAttribute()) && attrs.contains(p.getRightAttribute())
+					&& equal.equal(p.getLeftAttribute(), p.getRightAttribute()))
+			{
+				applies.add(p);
+			}
+		}
+		
+		for (Predicate p : selects)
+		{
+			for (Predicate v : view.getPredicates())
+			{
+				if (v.equalsValue() && v.getRightValue().equals(p.getRightValue())
+						&& equal.equal(v.getLeftAttribute(), p.getLeftAttribute()))
 				{
-					mostRestrictive    = testOp;
-					completedPredicate = p;
-					leftHolder         = ops.get(0);
-					rightHolder        = ops.get(1);
+					applies.add(p);
+					break;
 				}
 			}
+		}
+		
+		// Anything still needed must have been kept by the View
+		for (Attribute a : attrs)
+		{
+			int uses = 0;
 			
-			if (completedPredicate == null) continue;
+			for (Predicate p : applies)
+			{
+				if (a.equals(p.getLeftAttribute())) uses++;
+				if (a.equals(p.getRightAttribute())) uses++;
+			}
 			
-			// Whichever predicate we've completed needs to be deleted from
-			// our stores, as we've dealt with it now
-			rels.remove(completedPredicate);
+			Integer required = requiredAttrs.get(a);
+			boolean needed   = outputStar || (required != null && required > uses);
 			
-			if (completedPredicate.getLeftAttribute() != null)
+			if (needed && !view.getAttributes().contains(a)) return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Checks if there is a known join predicate between two attributes
+	 * 
+	 * @param a The first attribute
+	 * @param b The second attribute
+	 * @return True if a=b or b=a is known
+	 */
+	private boolean hasJoin(Attribute a, Attribute b)
+	{
+		for (Predicate p : joins)
+		{
+			if ((a.equals(p.getLeftAttribute()) && b.equals(p.getRightAttribute()))
+					|| (b.equals(p.getLeftAttribute()) && a.equals(p.getRightAttribute())))
 			{
-				// Same goes for any variables it used... we no longer need to
-				// project them above here
-				decreaseRequired(completedPredicate.getLeftAttribute());
-				decreaseRequired(completedPredicate.getRightAttribute());
+				return true;
 			}
-			else
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Checks if there is a known attr=val select predicate
+	 * 
+	 * @param a The attribute
+	 * @param value The value
+	 * @return True if a=value is known
+	 */
+	private boolean hasSelect(Attribute a, String value)
+	{
+		for (Predicate p : selects)
+		{
+			if (a.equals(p.getLeftAttribute()) && value.equals(p.getRightValue()))
 			{
-				leftHolder.close();
-				rightHolder.close();
+				return true;
 			}
-			
-			// Add any projections that we *do* need then push this new join
-			// into the mix. The OperatorHolder is used to replace all references
-			// of the two Operators below this Join, with the Join itself.
-			newOp                   = addRequiredProjections(mostRestrictive);
-			OperatorHolder opHolder = new OperatorHolder(newOp);
-			leftHolder.setOperator(opHolder);
-			rightHolder.setOperator(opHolder);
 		}
 		
-		return newOp;
+		return false;
 	}
 	
 	/**
 	 * Goes down the tree, collecting all children of Product statements into
 	 * a single list
 	 * 
-	 * @param rels The HashMap to populate with relations
 	 * @param op The Operator to search
+	 * @param all The list to populate with every relation found
+	 * @return The join predicates, with the relations they join
 	 */
-	private HashMap<Predicate, ArrayList<OperatorHolder>> getAllRels(BinaryOperator op)
+	private HashMap<Predicate, ArrayList<OperatorHolder>> getAllRels(Operator op,
+			ArrayList<OperatorHolder> all)
 	{
 		HashMap<Predicate, ArrayList<OperatorHolder>> rels =
 				new HashMap<Predicate, ArrayList<OperatorHolder>>();
 		ArrayDeque<Operator> stack         = new ArrayDeque<Operator>();
-		ArrayList<OperatorHolder> products = new ArrayList<OperatorHolder>();
-		ArrayList<OperatorHolder> all      = new ArrayList<OperatorHolder>();
 
 		stack.push(op);
 		
@@ -448,7 +1608,6 @@ public class Optimiser
 			Relation R             = newOp.getOutput();
 			List<Attribute> attrs  = R.getAttributes();
 			OperatorHolder hold    = new OperatorHolder(newOp);
-			boolean found          = false;
 			all.add(hold);
 			
 			// Loop over the known joins to see if we can add this operator to one
@@ -476,12 +1635,17 @@ public class Optimiser
 					{
 						a           = new Attribute(a);
 						Attribute b = new Attribute(p.getRightAttribute());
-						newOp       = new Select(newOp, new Predicate(a, b));
 						decreaseRequired(a);
 						decreaseRequired(b);
-						estimator.visit((Select)newOp);
-						hold.replaceOperator(addRequiredProjections(newOp));
 						it.remove();
+						
+						// Already equal within this relation, eg a View
+						if (applied.equal(a, b)) continue;
+						
+						newOp       = new Select(newOp, new Predicate(a, b));
+						applied.union(a, b);
+						estimator.visit((Select)newOp);
+						hold.replaceOperator(addRequiredProjections(newOp, false));
 						continue;
 					}
 				}
@@ -498,9 +1662,6 @@ public class Optimiser
 					continue;
 				}
 				
-				// Make a note of the fact we've found a predicate for this guy
-				found = true;
-				
 				if (rels.containsKey(p))
 				{
 					rels.get(p).add(hold);
@@ -518,65 +1679,86 @@ public class Optimiser
 					rels.put(p, al);
 				}
 			}
-			
-			// If we didn't find this relation in any of the predicates, that means
-			// it is actually a product (egh!). Record it so we can add it to the
-			// output
-			if (!found)
-			{
-				hold.closeable();
-				products.add(hold);
-			}
 		}
 		
-		// Special Case
-		// We've only found one acceptable relation
-		// This is a bit of a hack to get this to return properly, but
-		// optimise(BinaryOperator) will understand this and simply
-		// return the Operator without doing anything to it
-		if (products.size() == 1 && all.size() == 1)
+		return rels;
+	}
+	
+	/**
+	 * Adds the required Projections to a candidate plan, then adds it to the
+	 * list of candidates
+	 * 
+	 * If the Projection removes the attribute the plan was ordered on, it is
+	 * treated as unordered.
+	 * 
+	 * @param options The candidates to add to
+	 * @param plan The candidate plan
+	 * @param order The attribute the plan's output is ordered on, or null
+	 */
+	private void addProjectedCandidate(ArrayList<PlanCandidate> options, Operator plan, Attribute order)
+	{
+		plan = addRequiredProjections(plan, false);
+		
+		if (order != null && !plan.getOutput().getAttributes().contains(order))
+		{
+			order = null;
+		}
+		
+		PlanCandidate.add(options, plan, order);
+	}
+	
+	/**
+	 * Records a list of candidates against its cheapest plan
+	 * 
+	 * @param options The candidates for a set of relations
+	 * @return The cheapest plan
+	 */
+	private Operator keepCandidates(ArrayList<PlanCandidate> options)
+	{
+		Operator best = options.get(0).getPlan();
+		candidates.put(best, options);
+		
+		return best;
+	}
+	
+	/**
+	 * Returns the candidates kept for the given plan
+	 * 
+	 * @param plan The cheapest plan for a set of relations
+	 * @return Its candidates, or just the plan itself (treated as unordered)
+	 *    if none were kept
+	 */
+	private ArrayList<PlanCandidate> getCandidates(Operator plan)
+	{
+		ArrayList<PlanCandidate> options = candidates.get(plan);
+		
+		if (options == null)
 		{
-			Predicate empty              = new Predicate(null, "");
-			
-			ArrayList<OperatorHolder> al = new ArrayList<OperatorHolder>();
-			al.add(products.get(0));
-			rels.put(empty, al);
-			
-			return rels;
+			options = new ArrayList<PlanCandidate>();
+			options.add(new PlanCandidate(plan, null));
 		}
 		
-		// If we've found some products, we have to compare them to every single
-		// other relation to check if their product would be most restrictive
-		//
-		// NB: Products and Joins are checked together as products *can* sometimes
-		// be less costly. For example:
-		//   A JOIN[foo=bar] B TIMES C
-		// If B and C were both very small, and A was massive, doing (B TIMES C)
-		// first may be preferable...
-		for (OperatorHolder c : products)
+		return options;
+	}
+	
+	/**
+	 * Checks if an order on the given attribute could be used by any
+	 * pending join
+	 * 
+	 * @param a The attribute
+	 * @return True if a join predicate references it
+	 */
+	private boolean isInteresting(Attribute a)
+	{
+		for (Predicate p : joins)
 		{
-			// Remove it to prevent:
-			//   a) The following loop comparing the operator with itself
-			//   b) Double comparisons in future loops
-			//          EG: (A TIMES B) and (B TIMES A)
-			all.remove(c);
-			
-			for (OperatorHolder pair : all)
+			if (a.equals(p.getLeftAttribute()) || a.equals(p.getRightAttribute()))
 			{
-				// We create an empty predicate to indicate this is a bog-standard
-				// Product operation
-				// (This Predicate won't leave the Optimiser class, it'll be replaced
-				// with a Product Operator before output, fear not!)
-				Predicate empty              = new Predicate(null, "");
-				
-				ArrayList<OperatorHolder> al = new ArrayList<OperatorHolder>();
-				al.add(c);
-				al.add(pair);
-				rels.put(empty, al);
+				return true;
 			}
 		}
 		
-		return rels;
+		return false;
 	}
 	
 	/**
@@ -610,11 +1792,17 @@ public class Optimiser
 	}
 	
 	/**
+	 * Projects a plan onto the attributes which are still required
+	 * 
+	 * Part way through a plan, this is only done if the bytes saved are
+	 * worth it (see ProjectionPlacer). The output of the query is always
+	 * projected, as it must be exactly the attributes asked for.
 	 * 
-	 * @param newPlan
-	 * @return
+	 * @param newPlan The plan to project
+	 * @param force True if the Project must be added whatever the cost
+	 * @return The plan, projected if necessary
 	 */
-	private Operator addRequiredProjections(Operator newPlan)
+	private Operator addRequiredProjections(Operator newPlan, boolean force)
 	{
 		// If we have to output everything, no Projects are required
 		if (outputStar) return newPlan;
@@ -640,13 +1828,41 @@ public class Optimiser
 		}
 		else if (found.size() != attrs.size())
 		{
-			newPlan = new Project(newPlan, found);
-			estimator.visit((Project)newPlan);
+			ProjectionPlacer placer = new ProjectionPlacer(estimator);
+			
+			if (force)
+			{
+				newPlan = placer.projectAlways(newPlan, found);
+			}
+			else
+			{
+				newPlan = placer.project(newPlan, found);
+			}
 		}
 		
 		return newPlan;
 	}
 	
+	/**
+	 * A connected component of the join graph
+	 * 
+	 * @author Emily Shepherd
+	 *
+	 */
+	private class Component
+	{
+		/**
+		 * The relations in this component
+		 */
+		private ArrayList<OperatorHolder> members = new ArrayList<OperatorHolder>();
+		
+		/**
+		 * The join predicates between them, with the relations they join
+		 */
+		private HashMap<Predicate, ArrayList<OperatorHolder>> rels =
+				new HashMap<Predicate, ArrayList<OperatorHolder>>();
+	}
+	
 	/**
 	 * This class is used by the Product optimiser to wrap an Operator
 	 * 
@@ -665,10 +1881,6 @@ public class Optimiser
 		
 		private OperatorHolder opHolder;
 		
-		private boolean closeable = false;
-		
-		private boolean closed = false;
-		
 		/**
 		 * Constructor
 		 * 
@@ -700,11 +1912,7 @@ public class Optimiser
 		
 		public Operator getOperator()
 		{
-			if (closed)
-			{
-				return null;
-			}
-			else if (opHolder == null)
+			if (opHolder == null)
 			{
 				return op;
 			}
@@ -714,19 +1922,6 @@ public class Optimiser
 			}
 		}
 		
-		public void closeable()
-		{
-			closeable = true;
-		}
-		
-		public void close()
-		{
-			if (closeable)
-			{
-				closed = true;
-			}
-		}
-		
 		@Override
 		public String toString()
 		{
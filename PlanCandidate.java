@@ -0,0 +1,123 @@
+package sjdb;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A candidate plan for a set of relations, with the order it delivers
+ * 
+ * The optimiser keeps several candidates for each set of relations: the
+ * cheapest, plus any more expensive ones which deliver a useful order
+ * (System R's "interesting orders").
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class PlanCandidate
+{
+	/**
+	 * The plan
+	 */
+	private Operator plan;
+	
+	/**
+	 * The attribute the plan's output is ordered on, or null
+	 */
+	private Attribute order;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param plan The plan
+	 * @param order The attribute the plan's output is ordered on, or null
+	 */
+	public PlanCandidate(Operator plan, Attribute order)
+	{
+		this.plan  = plan;
+		this.order = order;
+	}
+	
+	/**
+	 * @return The plan
+	 */
+	public Operator getPlan()
+	{
+		return plan;
+	}
+	
+	/**
+	 * @return The attribute the plan's output is ordered on, or null
+	 */
+	public Attribute getOrder()
+	{
+		return order;
+	}
+	
+	/**
+	 * @return The estimated total cost of the plan
+	 */
+	public double getCost()
+	{
+		return plan.getCost();
+	}
+	
+	/**
+	 * Checks if this candidate makes another redundant: it is no more
+	 * expensive, and delivers at least as useful an order
+	 * 
+	 * @param other The other candidate
+	 * @return True if the other candidate can be pruned
+	 */
+	public boolean dominates(PlanCandidate other)
+	{
+		return getCost() <= other.getCost()
+				&& (other.order == null || other.order.equals(order));
+	}
+	
+	/**
+	 * Adds a candidate plan to a list of candidates for the same relations,
+	 * pruning any that are dominated
+	 * 
+	 * The list is kept sorted by cost, so the cheapest candidate is always
+	 * first.
+	 * 
+	 * @param options The candidates to add to
+	 * @param plan The candidate plan
+	 * @param order The attribute the plan's output is ordered on, or null
+	 */
+	public static void add(List<PlanCandidate> options, Operator plan, Attribute order)
+	{
+		add(options, new PlanCandidate(plan, order));
+	}
+	
+	/**
+	 * Adds a candidate to a list of candidates for the same relations,
+	 * pruning any that are dominated
+	 * 
+	 * @param options The candidates to add to
+	 * @param c The candidate
+	 */
+	public static void add(List<PlanCandidate> options, PlanCandidate c)
+	{
+		Iterator<PlanCandidate> it = options.iterator();
+		int i = 0;
+		
+		while (it.hasNext())
+		{
+			PlanCandidate d = it.next();
+			
+			if (d.dominates(c)) return;
+			
+			if (c.dominates(d))
+			{
+				it.remove();
+			}
+			else if (d.getCost() <= c.getCost())
+			{
+				i++;
+			}
+		}
+		
+		options.add(i, c);
+	}
+}
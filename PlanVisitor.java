@@ -11,6 +11,16 @@ public interface PlanVisitor {
 	 * @param op Scan operator to be visited
 	 */
 	public void visit(Scan op);
+	/**
+	 * Visit an IndexScan operator.
+	 * @param op IndexScan operator to be visited
+	 */
+	public void visit(IndexScan op);
+	/**
+	 * Visit a BitmapScan operator.
+	 * @param op BitmapScan operator to be visited
+	 */
+	public void visit(BitmapScan op);
 	/**
 	 * Visit a Project operator.
 	 * @param op Project operator to be visited
@@ -31,4 +41,34 @@ public interface PlanVisitor {
 	 * @param op
 	 */
 	public void visit(Join op);
+	/**
+	 * Visit an Aggregate operator.
+	 * @param op Aggregate operator to be visited
+	 */
+	public void visit(Aggregate op);
+	/**
+	 * Visit a SemiJoin operator.
+	 * @param op SemiJoin operator to be visited
+	 */
+	public void visit(SemiJoin op);
+	/**
+	 * Visit a MultiwayJoin operator.
+	 * @param op MultiwayJoin operator to be visited
+	 */
+	public void visit(MultiwayJoin op);
+	/**
+	 * Visit a RuntimeFilter operator.
+	 * @param op RuntimeFilter operator to be visited
+	 */
+	public void visit(RuntimeFilter op);
+	/**
+	 * Visit a Sort operator.
+	 * @param op Sort operator to be visited
+	 */
+	public void visit(Sort op);
+	/**
+	 * Visit a Fetch operator.
+	 * @param op Fetch operator to be visited
+	 */
+	public void visit(Fetch op);
 }
@@ -0,0 +1,96 @@
+package sjdb;
+
+import java.util.List;
+
+/**
+ * Decides whether a Project is worth adding to a plan
+ * 
+ * A Project only helps if the narrower tuples it produces save more, in
+ * the operators above it, than it costs to apply. The saving is measured
+ * as the difference in the cost of materialising the relation once with
+ * and without the dropped attributes (see CostModel.spool()), which is the
+ * least any operator above that buffers, hashes or re-reads its input
+ * will save. A Project which doesn't even save a page is never worth it.
+ * 
+ * A Project placed directly on another Project is fused with it, rather
+ * than stacked on top.
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class ProjectionPlacer
+{
+	/**
+	 * The Estimator used to cost each Project
+	 */
+	private Estimator estimator;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param estimator The Estimator used to cost each Project
+	 */
+	public ProjectionPlacer(Estimator estimator)
+	{
+		this.estimator = estimator;
+	}
+	
+	/**
+	 * Projects a plan onto the given attributes, if that is worth it
+	 * 
+	 * @param plan The plan to project
+	 * @param attributes The attributes to keep
+	 * @return The projected plan, or the plan unchanged
+	 */
+	public Operator project(Operator plan, List<Attribute> attributes)
+	{
+		Project project = fuse(plan, attributes);
+		CostModel model = estimator.getCostModel();
+		double saving   = model.spool(plan.getOutput()) - model.spool(project.getOutput());
+		
+		if (saving > model.cost(project))
+		{
+			return project;
+		}
+		
+		return plan;
+	}
+	
+	/**
+	 * Projects a plan onto the given attributes, whatever the cost
+	 * 
+	 * This is for the output of a query, which must be exactly the
+	 * attributes asked for.
+	 * 
+	 * @param plan The plan to project
+	 * @param attributes The attributes to keep
+	 * @return The projected plan
+	 */
+	public Operator projectAlways(Operator plan, List<Attribute> attributes)
+	{
+		return fuse(plan, attributes);
+	}
+	
+	/**
+	 * Builds a Project over a plan, fusing it with the plan's own Project
+	 * if it has one
+	 * 
+	 * @param plan The plan to project
+	 * @param attributes The attributes to keep
+	 * @return The estimated Project
+	 */
+	private Project fuse(Operator plan, List<Attribute> attributes)
+	{
+		Operator input = plan;
+		
+		if (plan instanceof Project)
+		{
+			input = ((Project)plan).getInput();
+		}
+		
+		Project project = new Project(input, attributes);
+		estimator.visit(project);
+		
+		return project;
+	}
+}
@@ -17,19 +17,30 @@ import java.util.regex.Matcher;
  * SELECT <attribute name>,<attribute name>,...,<attribute name>
  * FROM <relation name>,<relation name>,...,<relation name>
  * WHERE <predicate>,<predicate>,...,<predicate>
+ * GROUP BY <attribute name>,<attribute name>,...,<attribute name>
  * 
  * where <predicate> is of one of the following two forms:
  * 
  * <attribute name>="<value>"
  * <attribute name>=<attribute name>
  * 
- * The WHERE line (corresponding to the select operators) is optional and 
- * may be omitted; the other lines are required.
+ * The WHERE line (corresponding to the select operators) and the GROUP BY 
+ * line are optional and may be omitted; the other lines are required.
+ * 
+ * As well as attribute names, the SELECT line may contain aggregations of
+ * the form COUNT(*), COUNT(<attribute name>), SUM(<attribute name>), 
+ * MIN(<attribute name>) or MAX(<attribute name>).
  * 
  * To form the canonical query, a left-deep tree of cartesian
  * products over scans over the named relations is built, following by a series
  * of select with the given predicates, and then a single project 
- * with the given attributes.
+ * with the given attributes. If there are any aggregations, or a GROUP BY 
+ * line, a single aggregate is used instead of the project. It groups on the 
+ * attributes of the GROUP BY line or, if there is none, the attributes of 
+ * the SELECT line. Every attribute on the SELECT line must then be grouped 
+ * on; if the SELECT line leaves out some of the GROUP BY line's attributes, 
+ * or lists its attributes in another order, a project above the aggregate 
+ * outputs just what it selects.
  * 
  * Note that the author of this class was extremely lazy, and so the parsing 
  * is unforgiving and may be sensitive to extraneous whitespace. In particular, 
@@ -39,6 +50,11 @@ import java.util.regex.Matcher;
  * @author nmg
  */
 public class QueryParser {
+	/**
+	 * Matches an aggregation on the SELECT line, eg SUM(price)
+	 */
+	private static final Pattern AGGREGATION = Pattern.compile("(COUNT|SUM|MIN|MAX)\\((\\w+|\\*)\\)");
+	
 	private BufferedReader reader;
 	private Catalogue catalogue;
 
@@ -67,13 +83,28 @@ public class QueryParser {
 		String projectLine = this.reader.readLine();
 		String productLine = this.reader.readLine();
 		String selectLine = this.reader.readLine();
+		String groupLine = null;
+		
+		if (selectLine != null && selectLine.startsWith("GROUP BY")) {
+			groupLine = selectLine;
+			selectLine = null;
+		} else {
+			groupLine = this.reader.readLine();
+		}
 		
 		product = parseProduct(productLine);
 		if (selectLine != null && selectLine.startsWith("WHERE")) {
 			select = parseSelect(selectLine, product); 
-			project = parseProject(projectLine, select);
 		} else {
-			project = parseProject(projectLine, product);
+			select = product;
+		}
+		
+		if (groupLine != null && groupLine.startsWith("GROUP BY")) {
+			project = parseAggregate(projectLine, groupLine, select);
+		} else if (AGGREGATION.matcher(projectLine).find()) {
+			project = parseAggregate(projectLine, null, select);
+		} else {
+			project = parseProject(projectLine, select);
 		}
 		
 		return project;
@@ -190,4 +221,71 @@ public class QueryParser {
 			return new Project(op, attributes);
 		}
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Parse a "SELECT ..." line containing aggregations, and an optional
+	 * "GROUP BY ..." line, and build the corresponding aggregate operator.
+	 * If the aggregate's output (its groups, then its aggregations) is not
+	 * what the SELECT line asks for, a project operator above it picks out
+	 * the attributes selected, in order.
+	 * @param line
+	 * @param groupLine
+	 * @param op
+	 * @return
+	 * @throws Exception if an attribute is selected which is not
+	 * grouped on
+	 */
+	private Operator parseAggregate(String line, String groupLine, Operator op) throws Exception {
+		String[] atts = line.split("SELECT\\s+");
+		String[] attr = atts[1].split("\\s*,\\s*");
+		ArrayList<Attribute> groupBy = new ArrayList<Attribute>();
+		ArrayList<Aggregation> aggregations = new ArrayList<Aggregation>();
+		ArrayList<Attribute> selected = new ArrayList<Attribute>();
+		
+		for (int i=0; i<attr.length; i++) {
+			Matcher m = AGGREGATION.matcher(attr[i].trim());
+			
+			if (m.matches()) {
+				Attribute a = m.group(2).equals("*") ? null : new Attribute(m.group(2));
+				Aggregation agg = new Aggregation(Aggregation.Function.valueOf(m.group(1)), a);
+				aggregations.add(agg);
+				selected.add(new Attribute(agg.getName()));
+			} else {
+				Attribute a = new Attribute(attr[i].trim());
+				selected.add(a);
+				if (groupLine == null) {
+					groupBy.add(a);
+				}
+			}
+		}
+		
+		if (groupLine != null) {
+			String[] grps = groupLine.split("GROUP BY\\s+");
+			String[] grp = grps[1].split("\\s*,\\s*");
+			
+			for (int i=0; i<grp.length; i++) {
+				groupBy.add(new Attribute(grp[i].trim()));
+			}
+		}
+		
+		ArrayList<Attribute> output = new ArrayList<Attribute>(groupBy);
+		
+		for (Aggregation agg : aggregations) {
+			output.add(new Attribute(agg.getName()));
+		}
+		
+		for (Attribute a : selected) {
+			if (!output.contains(a)) {
+				throw new Exception("Attribute " + a + " is selected but not grouped on");
+			}
+		}
+		
+		Operator aggregate = new Aggregate(op, groupBy, aggregations);
+		
+		if (output.equals(selected)) {
+			return aggregate;
+		}
+		
+		return new Project(aggregate, selected);
+	}
+}
@@ -0,0 +1,166 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Finds a cheap join tree for a JoinGraph by random sampling (QuickPick)
+ * 
+ * Each sample shuffles the predicates, then walks through them, joining the
+ * two sub-plans either side of each one, unless they've already been joined.
+ * This always produces a valid bushy tree without Products, in time linear
+ * in the number of predicates.
+ * 
+ * Samples are taken until cancelled, keeping the cheapest. As costs only
+ * ever grow as a plan is built up, a sample is abandoned as soon as its
+ * partial cost exceeds the best complete plan found so far.
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class QuickPickEnumerator
+{
+	/**
+	 * The graph to enumerate
+	 */
+	private JoinGraph graph;
+	
+	/**
+	 * Tells enumeration when to stop
+	 */
+	private CancellationToken token;
+	
+	/**
+	 * The source of randomness
+	 */
+	private Random random;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param graph The graph to enumerate
+	 * @param token Tells enumeration when to stop
+	 * @param random The source of randomness
+	 */
+	public QuickPickEnumerator(JoinGraph graph, CancellationToken token, Random random)
+	{
+		this.graph  = graph;
+		this.token  = token;
+		this.random = random;
+	}
+	
+	/**
+	 * Samples plans until cancelled, returning the cheapest
+	 * 
+	 * At least one sample is always completed.
+	 * 
+	 * @return The cheapest plan joining every relation in the graph
+	 */
+	public PlanCandidate enumerate()
+	{
+		PlanCandidate best = null;
+		
+		do
+		{
+			PlanCandidate plan = sample(best == null ? Double.POSITIVE_INFINITY : best.getCost());
+			
+			if (plan != null)
+			{
+				best = plan;
+			}
+		}
+		while (!token.isCancelled());
+		
+		return best;
+	}
+	
+	/**
+	 * Samples plans until cancelled, returning the cheapest which beats a
+	 * plan that is already known
+	 * 
+	 * @param bound The cost of the known plan
+	 * @return The cheapest plan found, or null if none were cheaper than
+	 *    the bound
+	 */
+	public PlanCandidate enumerate(double bound)
+	{
+		PlanCandidate best = null;
+		
+		while (!token.isCancelled())
+		{
+			PlanCandidate plan = sample(best == null ? bound : best.getCost());
+			
+			if (plan != null)
+			{
+				best = plan;
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Builds a single random plan
+	 * 
+	 * @param bound The cost of the best plan so far
+	 * @return The plan, or null if it was abandoned for costing more than
+	 *    the bound
+	 */
+	private PlanCandidate sample(double bound)
+	{
+		int n                    = graph.size();
+		PlanCandidate[] trees    = new PlanCandidate[n];
+		BitSet[] sets            = new BitSet[n];
+		int[] owners             = new int[n];
+		ArrayList<Integer> edges = new ArrayList<Integer>();
+		
+		// Each relation starts off as a tree on its own
+		for (int i = 0; i < n; i++)
+		{
+			trees[i]  = graph.getRelation(i).get(0);
+			sets[i]   = new BitSet(n);
+			sets[i].set(i);
+			owners[i] = i;
+		}
+		
+		for (int k = 0; k < graph.getPredicateCount(); k++)
+		{
+			edges.add(k);
+		}
+		
+		Collections.shuffle(edges, random);
+		
+		for (int k : edges)
+		{
+			int a = owners[graph.getLeft(k)];
+			int b = owners[graph.getRight(k)];
+			
+			// Already joined by an earlier predicate
+			if (a == b) continue;
+			
+			if (random.nextBoolean())
+			{
+				int swap = a;
+				a        = b;
+				b        = swap;
+			}
+			
+			PlanCandidate joined = graph.join(trees[a], sets[a], trees[b], sets[b]);
+			
+			if (joined.getCost() >= bound) return null;
+			
+			trees[a] = joined;
+			trees[b] = null;
+			sets[a].or(sets[b]);
+			
+			for (int i = sets[b].nextSetBit(0); i >= 0; i = sets[b].nextSetBit(i + 1))
+			{
+				owners[i] = a;
+			}
+		}
+		
+		return trees[owners[0]];
+	}
+}
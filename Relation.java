@@ -11,6 +11,11 @@ import java.util.ArrayList;
  * @author nmg
  */
 public class Relation {
+	/**
+	 * The size of a single disk page, in bytes
+	 */
+	public static final int PAGE_SIZE = 4096;
+
 	private List<Attribute> attributes;
 	private int size;
 
@@ -56,7 +61,7 @@ public class Relation {
 			// If the attribute has more distinct values than there are tuples
 			// in this relation, limit the distinct values to the number of
 			// tuples
-			this.attributes.add(new Attribute(attribute.getName(), this.size));
+			this.attributes.add(new Attribute(attribute, this.size));
 		} else {
 			this.attributes.add(attribute);	
 		}
@@ -71,6 +76,29 @@ public class Relation {
 		return size;
 	}
 	
+	/**
+	 * Return the width of a single tuple of this relation, in bytes
+	 * 
+	 * @return the sum of the widths of its attributes
+	 */
+	public int getTupleWidth() {
+		int width = 0;
+		for (Attribute attribute : this.attributes) {
+			width += attribute.getWidth();
+		}
+		return width;
+	}
+	
+	/**
+	 * Return the number of pages needed to store this relation
+	 * 
+	 * @return the page count
+	 */
+	public long getPageCount() {
+		long bytes = (long) size * getTupleWidth();
+		return (bytes + PAGE_SIZE - 1) / PAGE_SIZE;
+	}
+	
 	
 	/**
 	 * Render this relation and its statistics in a form suitable for debugging 
@@ -0,0 +1,60 @@
+package sjdb;
+
+/**
+ * This class represents a runtime join filter: a Bloom filter of the join
+ * attribute values of a hash join's build side, which is applied to the
+ * probe side as soon as it is read, so that tuples which can't join are
+ * discarded before they reach the join. The filter is built while the
+ * join builds its hash table, so its source is not an input of this
+ * operator.
+ * @author Emily Shepherd
+ */
+public class RuntimeFilter extends UnaryOperator {
+	private Operator source;
+	private Predicate predicate;
+	private double falsePositiveRate;
+	
+	/**
+	 * Create a new runtime filter operator.
+	 * @param input Child operator to be filtered
+	 * @param source Build side of the hash join the filter is built by
+	 * @param predicate Join predicate, with the left attribute from the
+	 *        input and the right attribute from the source
+	 * @param falsePositiveRate Fraction of the tuples which can't join that
+	 *        the filter lets through anyway
+	 */
+	public RuntimeFilter(Operator input, Operator source, Predicate predicate, double falsePositiveRate) {
+		super(input);
+		this.source = source;
+		this.predicate = predicate;
+		this.falsePositiveRate = falsePositiveRate;
+	}
+	
+	public Operator getSource() {
+		return this.source;
+	}
+	
+	public Predicate getPredicate() {
+		return this.predicate;
+	}
+	
+	public double getFalsePositiveRate() {
+		return this.falsePositiveRate;
+	}
+	
+	/* (non-Javadoc)
+	 * @see sjdb.UnaryOperator#accept(sjdb.OperatorVisitor)
+	 */
+	public void accept(PlanVisitor visitor) {
+		super.accept(visitor);
+		visitor.visit(this);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "BLOOM FILTER [" + this.getPredicate().toString() + "] (" +
+				this.getInput().toString() + ")";
+	}
+}
@@ -0,0 +1,165 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pushes runtime join filters down into the probe sides of hash joins
+ * 
+ * For each hash join, the relation read on its probe side which holds its
+ * join attribute is found, looking down through Projects, Selects and
+ * other joins. A RuntimeFilter built from the join's build side is tried
+ * directly above that Scan, and is kept if the Estimator finds the whole
+ * plan cheaper for it: that is, if the build side holds few enough of
+ * the probe side's values to make discarding the rest early worth it.
+ * 
+ * Joins are tried top-down, so a filter from a join can pass below any
+ * number of joins beneath it.
+ * 
+ * Usage:
+ *   new RuntimeFilterPlacer(estimator).place(plan);
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class RuntimeFilterPlacer
+{
+	/**
+	 * The false positive rate each filter is sized for
+	 */
+	public static final double FALSE_POSITIVE_RATE = 0.01;
+	
+	/**
+	 * The Estimator used to cost the plan with and without each filter
+	 */
+	private Estimator estimator;
+	
+	/**
+	 * The plan filters are being placed in
+	 */
+	private Operator plan;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param estimator The Estimator used to cost each filter
+	 */
+	public RuntimeFilterPlacer(Estimator estimator)
+	{
+		this.estimator = estimator;
+	}
+	
+	/**
+	 * Places filters in a plan, which must have had its join algorithms
+	 * chosen
+	 * 
+	 * @param plan The plan, which is changed in place
+	 */
+	public void place(Operator plan)
+	{
+		ArrayList<Join> joins = new ArrayList<Join>();
+		this.plan             = plan;
+		
+		findHashJoins(plan, joins);
+		
+		for (Join join : joins)
+		{
+			push(join, 1, join);
+		}
+	}
+	
+	/**
+	 * Finds every hash join in a plan, each before any beneath it
+	 * 
+	 * @param op The plan
+	 * @param joins Filled with the joins found
+	 */
+	private void findHashJoins(Operator op, List<Join> joins)
+	{
+		// Scans have no inputs
+		if (op instanceof Scan || op instanceof IndexScan || op instanceof BitmapScan) return;
+		
+		if (op instanceof Join && ((Join)op).getAlgorithm() == Join.Algorithm.HASH)
+		{
+			joins.add((Join)op);
+		}
+		
+		for (Operator input : op.getInputs())
+		{
+			findHashJoins(input, joins);
+		}
+	}
+	
+	/**
+	 * Pushes a join's filter down towards the relation holding its probe
+	 * attribute, and tries it there
+	 * 
+	 * @param parent The Operator to look beneath
+	 * @param index The position of its input to look at
+	 * @param join The hash join the filter is built by
+	 */
+	private void push(Operator parent, int index, Join join)
+	{
+		Operator op = parent.getInputs().get(index);
+		Attribute a = join.getPredicate().getRightAttribute();
+		
+		if (op instanceof Scan || op instanceof IndexScan || op instanceof BitmapScan)
+		{
+			tryFilter(parent, index, join);
+		}
+		else if (op instanceof Project || op instanceof Select || op instanceof Sort || op instanceof RuntimeFilter
+				|| op instanceof Fetch)
+		{
+			push(op, 0, join);
+		}
+		else if (op instanceof Join || op instanceof Product || op instanceof MultiwayJoin)
+		{
+			List<Operator> inputs = op.getInputs();
+			
+			for (int i = 0; i < inputs.size(); i++)
+			{
+				// The inner side of an index nested loop join is only probed,
+				// never read in full
+				boolean probed = op instanceof Join
+						&& ((Join)op).getAlgorithm() == Join.Algorithm.INDEX_NESTED_LOOP
+						&& i == 1;
+				
+				if (!probed && inputs.get(i).getOutput().getAttributes().contains(a))
+				{
+					push(op, i, join);
+					return;
+				}
+			}
+		}
+		else if (op instanceof SemiJoin && ((SemiJoin)op).getLeft().getOutput().getAttributes().contains(a))
+		{
+			push(op, 0, join);
+		}
+	}
+	
+	/**
+	 * Adds a filter above a Scan, keeping it only if it makes the plan
+	 * cheaper
+	 * 
+	 * @param parent The Operator reading the Scan
+	 * @param index The Scan's position in its inputs
+	 * @param join The hash join the filter is built by
+	 */
+	private void tryFilter(Operator parent, int index, Join join)
+	{
+		Operator scan        = parent.getInputs().get(index);
+		Predicate p          = join.getPredicate();
+		double before        = plan.getCost();
+		RuntimeFilter filter = new RuntimeFilter(scan, join.getLeft(),
+				new Predicate(p.getRightAttribute(), p.getLeftAttribute()), FALSE_POSITIVE_RATE);
+		
+		parent.setInput(index, filter);
+		plan.accept(estimator);
+		
+		if (plan.getCost() >= before)
+		{
+			parent.setInput(index, scan);
+			plan.accept(estimator);
+		}
+	}
+}
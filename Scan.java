@@ -1,11 +1,15 @@
 package sjdb;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Iterator;
 
 /**
  * This class implements a Scan operator that feeds a NamedRelation into
  * a query plan.
+ * 
+ * A Scan may apply attr=value predicates itself, on attributes with zone
+ * maps, skipping every block whose zone map rules the value out.
  * @author nmg
  */
 public class Scan extends Operator {
@@ -13,13 +17,28 @@ public class Scan extends Operator {
 	 * The named relation to be scanned
 	 */
 	private NamedRelation relation;
+	/**
+	 * The attr=value predicates applied by the scan itself
+	 */
+	private List<Predicate> predicates;
 	
 	/**
 	 * Create a new scan of a given named relation
 	 * @param relation Named relation to be scanned
 	 */
 	public Scan(NamedRelation relation) {
+		this(relation, new ArrayList<Predicate>());
+	}
+	
+	/**
+	 * Create a new scan of a given named relation, applying attr=value
+	 * predicates as it reads
+	 * @param relation Named relation to be scanned
+	 * @param predicates Predicates on attributes with zone maps
+	 */
+	public Scan(NamedRelation relation, List<Predicate> predicates) {
 		this.relation = relation;
+		this.predicates = new ArrayList<Predicate>(predicates);
 		this.output = new Relation(relation.getTupleCount());
 		Iterator<Attribute> iter = relation.getAttributes().iterator();
 		
@@ -45,12 +64,32 @@ public class Scan extends Operator {
 		return this.relation;
 	}
 	
+	/**
+	 * Return the predicates applied by the scan itself
+	 * @return Predicates, which may be empty
+	 */
+	public List<Predicate> getPredicates() {
+		return this.predicates;
+	}
+	
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
 	 */
 	@Override
 	public String toString() {
-		return this.relation.toString();
+		if (this.predicates.isEmpty()) {
+			return this.relation.toString();
+		}
+		
+		String ret = "SCAN [";
+		Iterator<Predicate> iter = this.predicates.iterator();
+		while (iter.hasNext()) {
+			ret += iter.next().toString();
+			if (iter.hasNext()) {
+				ret += ",";
+			}
+		}
+		return ret + "] (" + this.relation.toString() + ")";
 	}
 	
 	/* (non-Javadoc)
@@ -0,0 +1,49 @@
+package sjdb;
+
+/**
+ * This class represents a semi-join operator, which keeps the tuples of
+ * its left input that join to at least one tuple of its right input. Its
+ * output has the attributes of the left input only.
+ * 
+ * Semi-joins are used as reducers: the right input is a relation which is
+ * also joined in full elsewhere in the plan, so is shared with it rather
+ * than computed again.
+ * 
+ * @author Emily Shepherd
+ */
+public class SemiJoin extends BinaryOperator {
+	private Predicate predicate;
+	
+	/**
+	 * Create a new semi-join operator.
+	 * @param left Child operator to be reduced
+	 * @param right Child operator to reduce it by
+	 * @param predicate Join predicate, with the left attribute from the
+	 *        left input
+	 */
+	public SemiJoin(Operator left, Operator right, Predicate predicate) {
+		super(left, right);
+		this.predicate = predicate;
+	}
+	
+	public Predicate getPredicate() {
+		return this.predicate;
+	}
+	
+	/* (non-Javadoc)
+	 * @see sjdb.BinaryOperator#accept(sjdb.OperatorVisitor)
+	 */
+	public void accept(PlanVisitor visitor) {
+		super.accept(visitor);
+		visitor.visit(this);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "(" + this.getLeft().toString() + ") SEMI JOIN [" + 
+				this.getPredicate().toString() +
+				"] (" + this.getRight().toString() + ")";
+	}
+}
@@ -0,0 +1,300 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Reduces each relation of an acyclic join graph by semi-joins, before
+ * any of them are joined
+ * 
+ * This is the first half of Yannakakis' algorithm. The join graph is
+ * treated as a hypergraph: each class of attributes known to be equal is a
+ * vertex, and each relation is an edge over the classes it joins on. If
+ * this is acyclic, it has a join tree, found by repeatedly removing "ears"
+ * (relations whose joined classes are all shared with a single other
+ * relation). Then:
+ *   + Bottom-up, each relation is reduced by the reduced relations of its
+ *     children in the tree
+ *   + Top-down, each relation is reduced again by the fully reduced
+ *     relation of its parent
+ * 
+ * Afterwards, no relation has a tuple which doesn't appear in the result
+ * of the whole join, so no intermediate result can be larger than it needs
+ * to be. Each reducer is the very same Operator as the relation it
+ * reduces by, so is only computed once, though each semi-join it feeds
+ * pays to materialise it for its own use.
+ * 
+ * Usage:
+ *   JoinGraph reduced = new SemiJoinReducer(graph, estimator).reduce();
+ * 
+ * @author Emily Shepherd
+ *
+ */
+public class SemiJoinReducer
+{
+	/**
+	 * The JoinGraph to be reduced
+	 */
+	private JoinGraph graph;
+	
+	/**
+	 * The Estimator used to cost each SemiJoin
+	 */
+	private Estimator estimator;
+	
+	/**
+	 * For each relation, the attribute it joins on in each class, keyed by
+	 * the class' representative
+	 */
+	private ArrayList<LinkedHashMap<Attribute, Attribute>> attrs = new ArrayList<LinkedHashMap<Attribute, Attribute>>();
+	
+	/**
+	 * Each relation's parent in the join tree
+	 */
+	private int[] parents;
+	
+	/**
+	 * The classes each relation shares with its parent
+	 */
+	private ArrayList<List<Attribute>> shared = new ArrayList<List<Attribute>>();
+	
+	/**
+	 * The relations, in the order they were removed from the hypergraph,
+	 * which has every child before its parent
+	 */
+	private ArrayList<Integer> order = new ArrayList<Integer>();
+	
+	/**
+	 * Whether the graph is acyclic, or null if that hasn't been worked out
+	 * yet
+	 */
+	private Boolean acyclic;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param graph The JoinGraph to be reduced
+	 * @param estimator The Estimator used to cost each SemiJoin
+	 */
+	public SemiJoinReducer(JoinGraph graph, Estimator estimator)
+	{
+		this.graph     = graph;
+		this.estimator = estimator;
+	}
+	
+	/**
+	 * Builds a copy of the graph with each relation fully reduced
+	 * 
+	 * A join of two relations can't be reduced by anything that the join
+	 * itself wouldn't do, so only graphs of three or more are considered.
+	 * 
+	 * @return The reduced JoinGraph, or null if the graph is cyclic, or too
+	 *    small to be worth reducing
+	 */
+	public JoinGraph reduce()
+	{
+		int n = graph.size();
+		
+		if (n < 3 || !isAcyclic())
+		{
+			return null;
+		}
+		
+		Operator[] up = new Operator[n];
+		
+		for (int i = 0; i < n; i++)
+		{
+			up[i] = graph.getRelation(i).get(0).getPlan();
+		}
+		
+		// Bottom-up: children are always removed before their parents
+		for (int e : order)
+		{
+			up[parents[e]] = semiJoin(up[parents[e]], parents[e], up[e], e);
+		}
+		
+		// Top-down: the root is the one relation left, so is already fully
+		// reduced
+		Operator[] full = new Operator[n];
+		
+		for (int i = 0; i < n; i++)
+		{
+			if (parents[i] < 0) full[i] = up[i];
+		}
+		
+		for (int j = order.size() - 1; j >= 0; j--)
+		{
+			int e   = order.get(j);
+			full[e] = semiJoin(up[e], e, full[parents[e]], parents[e]);
+		}
+		
+		ArrayList<List<PlanCandidate>> relations = new ArrayList<List<PlanCandidate>>();
+		
+		for (int i = 0; i < n; i++)
+		{
+			// A SemiJoin keeps the order of its left input
+			ArrayList<PlanCandidate> options = new ArrayList<PlanCandidate>();
+			options.add(new PlanCandidate(full[i], graph.getRelation(i).get(0).getOrder()));
+			relations.add(options);
+		}
+		
+		return graph.withRelations(relations);
+	}
+	
+	/**
+	 * Checks if the graph is acyclic, which is when it has a join tree
+	 * 
+	 * @return True if the graph is acyclic
+	 */
+	public boolean isAcyclic()
+	{
+		if (acyclic == null)
+		{
+			acyclic = buildJoinTree();
+		}
+		
+		return acyclic;
+	}
+	
+	/**
+	 * Finds a join tree for the graph, by GYO reduction
+	 * 
+	 * Classes which only one remaining relation joins on are dropped from
+	 * it. Then, any relation whose remaining classes are all joined on by
+	 * another remaining relation is an ear: it becomes that relation's
+	 * child, and is removed. This repeats until nothing changes. The graph
+	 * is acyclic if only one relation is left.
+	 * 
+	 * @return True if the graph is acyclic
+	 */
+	private boolean buildJoinTree()
+	{
+		int n                               = graph.size();
+		EquivalenceClasses classes          = new EquivalenceClasses();
+		ArrayList<HashSet<Attribute>> edges = new ArrayList<HashSet<Attribute>>();
+		boolean[] removed                   = new boolean[n];
+		parents                             = new int[n];
+		
+		for (int k = 0; k < graph.getPredicateCount(); k++)
+		{
+			Predicate p = graph.getPredicate(k);
+			classes.union(p.getLeftAttribute(), p.getRightAttribute());
+		}
+		
+		for (int i = 0; i < n; i++)
+		{
+			attrs.add(new LinkedHashMap<Attribute, Attribute>());
+			edges.add(new HashSet<Attribute>());
+			shared.add(new ArrayList<Attribute>());
+			parents[i] = -1;
+		}
+		
+		for (int k = 0; k < graph.getPredicateCount(); k++)
+		{
+			Predicate p = graph.getPredicate(k);
+			addVertex(graph.getLeft(k), classes.find(p.getLeftAttribute()), p.getLeftAttribute(), edges);
+			addVertex(graph.getRight(k), classes.find(p.getRightAttribute()), p.getRightAttribute(), edges);
+		}
+		
+		int live        = n;
+		boolean changed = true;
+		
+		while (changed && live > 1)
+		{
+			changed = false;
+			
+			for (int e = 0; e < n && live > 1; e++)
+			{
+				if (removed[e]) continue;
+				
+				// Drop the classes no other relation joins on
+				for (Attribute v : new ArrayList<Attribute>(edges.get(e)))
+				{
+					if (!sharedWithOthers(v, e, edges, removed))
+					{
+						edges.get(e).remove(v);
+						changed = true;
+					}
+				}
+				
+				for (int f = 0; f < n; f++)
+				{
+					if (f == e || removed[f] || !edges.get(f).containsAll(edges.get(e))) continue;
+					
+					parents[e] = f;
+					shared.get(e).addAll(edges.get(e));
+					order.add(e);
+					removed[e] = true;
+					changed    = true;
+					live--;
+					break;
+				}
+			}
+		}
+		
+		return live == 1;
+	}
+	
+	/**
+	 * Adds a class to the hyperedge of a relation
+	 * 
+	 * @param rel The relation
+	 * @param root The class' representative
+	 * @param attr The relation's attribute in that class
+	 * @param edges The hyperedges of each relation
+	 */
+	private void addVertex(int rel, Attribute root, Attribute attr, ArrayList<HashSet<Attribute>> edges)
+	{
+		edges.get(rel).add(root);
+		
+		if (!attrs.get(rel).containsKey(root))
+		{
+			attrs.get(rel).put(root, attr);
+		}
+	}
+	
+	/**
+	 * Checks if any other remaining relation joins on the given class
+	 * 
+	 * @param v The class' representative
+	 * @param e The relation to ignore
+	 * @param edges The hyperedges of each relation
+	 * @param removed Which relations have been removed
+	 * @return True if another relation joins on it
+	 */
+	private boolean sharedWithOthers(Attribute v, int e, ArrayList<HashSet<Attribute>> edges, boolean[] removed)
+	{
+		for (int f = 0; f < edges.size(); f++)
+		{
+			if (f != e && !removed[f] && edges.get(f).contains(v)) return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Reduces one relation by another, on every class they share in the
+	 * join tree
+	 * 
+	 * @param left The plan to be reduced
+	 * @param l The relation it is a plan for
+	 * @param right The plan to reduce it by
+	 * @param r The relation that is a plan for
+	 * @return The reduced plan
+	 */
+	private Operator semiJoin(Operator left, int l, Operator right, int r)
+	{
+		int child = parents[l] == r ? l : r;
+		
+		for (Attribute v : shared.get(child))
+		{
+			SemiJoin op = new SemiJoin(left, right, new Predicate(attrs.get(l).get(v), attrs.get(r).get(v)));
+			estimator.visit(op);
+			left = op;
+		}
+		
+		return left;
+	}
+}
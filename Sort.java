@@ -0,0 +1,41 @@
+package sjdb;
+
+/**
+ * This class represents an external merge sort operator, which orders its
+ * input on a single attribute. Sorted runs are generated by replacement
+ * selection, written out if they don't all fit in memory, and then merged
+ * k ways at a time with a loser tree until one run is left.
+ * @author Emily Shepherd
+ */
+public class Sort extends UnaryOperator {
+	private Attribute attribute;
+	
+	/**
+	 * Create a new sort operator.
+	 * @param input Child operator
+	 * @param attribute Attribute to sort on
+	 */
+	public Sort(Operator input, Attribute attribute) {
+		super(input);
+		this.attribute = attribute;
+	}
+	
+	public Attribute getAttribute() {
+		return this.attribute;
+	}
+	
+	/* (non-Javadoc)
+	 * @see sjdb.UnaryOperator#accept(sjdb.OperatorVisitor)
+	 */
+	public void accept(PlanVisitor visitor) {
+		super.accept(visitor);
+		visitor.visit(this);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "SORT [" + this.attribute.toString() + "] (" + getInput().toString() + ")";
+	}
+}
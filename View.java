@@ -0,0 +1,61 @@
+package sjdb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents a materialised view declared in the system
+ * catalogue: the stored result of joining some named relations, selecting
+ * on some predicates, and projecting onto some of their attributes.
+ * 
+ * A view is scanned like any other named relation, and has its own
+ * statistics. Its attributes have the same names as the attributes of the
+ * relations it was built from, so predicates on those attributes apply to
+ * the view unchanged.
+ * 
+ * @author Emily Shepherd
+ */
+public class View extends NamedRelation
+{
+	/**
+	 * The relations joined to build the view
+	 */
+	private List<NamedRelation> relations;
+	
+	/**
+	 * The attr=attr and attr=val predicates the view was built with
+	 */
+	private List<Predicate> predicates;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param name The name of the view
+	 * @param size The tuple count
+	 * @param relations The relations joined to build it
+	 * @param predicates The predicates it was built with
+	 */
+	public View(String name, int size, List<NamedRelation> relations, List<Predicate> predicates)
+	{
+		super(name, size);
+		
+		this.relations  = new ArrayList<NamedRelation>(relations);
+		this.predicates = new ArrayList<Predicate>(predicates);
+	}
+	
+	/**
+	 * @return The relations joined to build the view
+	 */
+	public List<NamedRelation> getRelations()
+	{
+		return relations;
+	}
+	
+	/**
+	 * @return The predicates the view was built with
+	 */
+	public List<Predicate> getPredicates()
+	{
+		return predicates;
+	}
+}
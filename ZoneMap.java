@@ -0,0 +1,106 @@
+package sjdb;
+
+/**
+ * This class represents a zone map declared in the system catalogue on a
+ * single attribute of a named relation: the minimum and maximum value of
+ * that attribute (and its null count) in each block of the relation,
+ * stored alongside the relation's data.
+ * 
+ * A Scan with an attr=value predicate on the attribute skips every block
+ * whose range doesn't contain the value, without decoding it.
+ * 
+ * @author Emily Shepherd
+ */
+public class ZoneMap
+{
+	private NamedRelation relation;
+	
+	private Attribute attribute;
+	
+	/**
+	 * When true, the relation is stored roughly in the order of this
+	 * attribute (for example, a fact table loaded in time order), so each
+	 * value lies in a few neighbouring blocks
+	 */
+	private boolean clustered;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param relation The relation
+	 * @param attribute The attribute whose ranges are kept
+	 * @param clustered True if the relation is stored in roughly this order
+	 */
+	public ZoneMap(NamedRelation relation, Attribute attribute, boolean clustered)
+	{
+		this.relation  = relation;
+		this.attribute = attribute;
+		this.clustered = clustered;
+	}
+	
+	/**
+	 * @return The relation
+	 */
+	public NamedRelation getRelation()
+	{
+		return relation;
+	}
+	
+	/**
+	 * @return The attribute whose ranges are kept
+	 */
+	public Attribute getAttribute()
+	{
+		return attribute;
+	}
+	
+	/**
+	 * @return True if the relation is stored in roughly this order
+	 */
+	public boolean isClustered()
+	{
+		return clustered;
+	}
+	
+	/**
+	 * Returns the fraction of the relation's blocks which might hold a
+	 * single value of the attribute, and so can't be skipped
+	 * 
+	 * For P pages, T tuples and V values: in a clustered relation, each
+	 * value spans P/V pages, plus one more where it straddles a boundary:
+	 *   min(1, (P/V + 1) / P)
+	 * Otherwise, values are spread at random, so a page of T/P tuples
+	 * misses the value altogether with probability (1 - 1/V)^(T/P):
+	 *   1 - (1 - 1/V)^(T/P)
+	 * 
+	 * @return The fraction of blocks read
+	 */
+	public double getBlockFraction()
+	{
+		double P = Math.max(relation.getPageCount(), 1);
+		double V = Math.max(attribute.getValueCount(), 1);
+		
+		if (clustered)
+		{
+			return Math.min(1, (P / V + 1) / P);
+		}
+		
+		return 1 - Math.pow(1 - 1 / V, relation.getTupleCount() / P);
+	}
+	
+	/**
+	 * Renders this zone map in the syntax used in the system catalogue
+	 * 
+	 * @return The rendering of this zone map
+	 */
+	public String render()
+	{
+		return "@zonemap:" + relation + ":" + attribute.getName() + (clustered ? ":clustered" : "");
+	}
+	
+	@Override
+	public String toString()
+	{
+		return render();
+	}
+}